@@ -9,6 +9,12 @@ public class Agent implements Player {
     protected Evaluation evaluation;
     protected int nbNodesExplored;
     protected String name;
+    // one list of moves per ply, reused from one search to the next
+    private MoveList[] moveLists = new MoveList[0];
+    // one budget allocator per ply, for the agents searching with a budget
+    private BudgetAllocator[] allocators = new BudgetAllocator[0];
+    // optional table of the positions already searched
+    protected TranspositionTable table = null;
 
     public Agent(String name, Evaluation evaluation) {
         this.name = name;
@@ -23,6 +29,83 @@ public class Agent implements Player {
         return legalMoves.get(rand.nextInt(legalMoves.size()));
     }
 
+    protected MoveList getMoveList(int ply) {
+        if(ply >= moveLists.length) {
+            MoveList[] lists = new MoveList[Math.max(2*moveLists.length, ply+1)];
+            System.arraycopy(moveLists, 0, lists, 0, moveLists.length);
+            for(int i=moveLists.length; i<lists.length; i++) {
+                lists[i] = new MoveList();
+            }
+            moveLists = lists;
+        }
+        return moveLists[ply];
+    }
+
+    protected BudgetAllocator getAllocator(int ply) {
+        if(ply >= allocators.length) {
+            BudgetAllocator[] newAllocators = new BudgetAllocator[Math.max(2*allocators.length, ply+1)];
+            System.arraycopy(allocators, 0, newAllocators, 0, allocators.length);
+            for(int i=allocators.length; i<newAllocators.length; i++) {
+                newAllocators[i] = new BudgetAllocator();
+            }
+            allocators = newAllocators;
+        }
+        return allocators[ply];
+    }
+
+    /* -----  Transposition table  ----- */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public TranspositionTable getTranspositionTable() { return table; }
+
+    /*
+    Returns true if the entry stored for a position gives its value for a
+    search of the given depth with the window [alpha, beta]
+    */
+    protected static boolean isCutoff(long entry, int depth, double alpha, double beta) {
+        if(entry == TranspositionTable.MISS
+        || TranspositionTable.getDepth(entry) < depth) {
+            return false;
+        }
+        double score = TranspositionTable.getScore(entry);
+        switch(TranspositionTable.getBound(entry)) {
+            case TranspositionTable.EXACT :
+                return true;
+            case TranspositionTable.LOWER_BOUND :
+                return score >= beta;
+            default :
+                return score <= alpha;
+        }
+    }
+
+    // best move stored in the entry, or -1 (the NONE of the move orderings)
+    protected static int hashMove(long entry) {
+        if(entry == TranspositionTable.MISS
+        || TranspositionTable.getMove(entry) == TranspositionTable.NO_MOVE) {
+            return -1;
+        }
+        return TranspositionTable.getMove(entry);
+    }
+
+    /*
+    Stores the result of the search of the position of board, alpha and beta
+    being the window the search started with
+    */
+    protected void store(Board board, int bestMove, double bestEval, int depth,
+                         double alpha, double beta) {
+        int bound = TranspositionTable.EXACT;
+        if(bestEval <= alpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        }
+        else if(bestEval >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        table.store(board.getHash(), bestMove < 0 ? TranspositionTable.NO_MOVE : bestMove,
+                    bestEval, depth, bound);
+    }
+
     public String getName() { return name; }
 
     public Evaluation getEvaluation() { return evaluation; }
@@ -8,17 +8,33 @@ import java.util.Collections;
 
 public class AgentBudget extends Agent {
     protected int totalBudget;
+    // the budget is shared evenly, or according to the prior of the moves
+    // (see BudgetAllocator)
+    protected boolean priorAllocation = false;
 
     public AgentBudget(String name, int totalBudget, Evaluation evaluation) {
         super(name, evaluation);
         this.totalBudget = totalBudget;
     }
 
+    public AgentBudget(String name, int totalBudget, Evaluation evaluation,
+                       int hashSizeMB) {
+        this(name, totalBudget, evaluation);
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+    }
+
+    public void setPriorAllocation(boolean priorAllocation) {
+        this.priorAllocation = priorAllocation;
+    }
+
     public Move play(Board board) {
         int turn = board.getTurn();
         nbNodesExplored = 0;
+        if(table != null) {
+            table.newSearch();
+        }
 
-        Move toPlay = null;
+        int toPlay = -1;
 
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
@@ -27,14 +43,27 @@ public class AgentBudget extends Agent {
         double alpha = Double.NEGATIVE_INFINITY;
         double beta = Double.POSITIVE_INFINITY;
         int budget = 0;
-        Vector<Move> legalMoves = board.getLegalMoves();
+        MoveList legalMoves = getMoveList(0);
+        board.getLegalMoves(legalMoves);
+        BudgetAllocator allocator = getAllocator(0);
+        if(priorAllocation) {
+            long entry = table == null ? TranspositionTable.MISS : table.probe(board.getHash());
+            allocator.reset(board, legalMoves, hashMove(entry));
+        }
         int nbMovesLeft = legalMoves.size();
-        for(Move legalMove : legalMoves) {
-            budget += (totalBudget - nbNodesExplored) / (nbMovesLeft--);
+        for(int i=0; i<legalMoves.size(); i++) {
+            int legalMove = legalMoves.get(i);
+            budget += priorAllocation ?
+                      allocator.share(i, totalBudget - nbNodesExplored) :
+                      (totalBudget - nbNodesExplored) / nbMovesLeft;
+            nbMovesLeft--;
 
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, budget);
+            double eval = minimax(board, alpha, beta, budget, 1);
             board.undo();
+            if(priorAllocation) {
+                allocator.update(i, eval, alpha, beta, evaluation.getUnit());
+            }
 
             // update the best evaluation and prunning values
             if(turn == 0) {
@@ -57,11 +86,11 @@ public class AgentBudget extends Agent {
 
         //System.out.println(name + " : The move was evaluated "
         //+ nbNodesExplored + " nodes to " + bestEval);
-        return toPlay;
+        return toPlay == -1 ? null : board.toMove(toPlay);
     }
 
     protected double minimax(Board board, double alpha, double beta,
-                             int maxBudget) {
+                             int maxBudget, int ply) {
         int turn = board.getTurn();
 
         if(maxBudget <= nbNodesExplored - 1 || board.gameOver() != 2) {
@@ -69,27 +98,69 @@ public class AgentBudget extends Agent {
             return evaluation.evaluate(board);
         }
 
+        // the budget plays the role of the depth in the transposition table :
+        // a search is reused by the searches with at most twice its budget
+        int depth = 32 - Integer.numberOfLeadingZeros(maxBudget - nbNodesExplored);
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
                           Double.POSITIVE_INFINITY;
+        int bestMove = -1;
 
         int budget = nbNodesExplored;
-        Vector<Move> legalMoves = board.getLegalMoves();
+        MoveList legalMoves = getMoveList(ply);
+        board.getLegalMoves(legalMoves);
+        // the best move found by a previous search is tried first
+        int hashMove = hashMove(entry);
+        BudgetAllocator allocator = getAllocator(ply);
+        if(priorAllocation) {
+            allocator.reset(board, legalMoves, hashMove);
+        }
+        else {
+            for(int i=1; i<legalMoves.size(); i++) {
+                if(legalMoves.get(i) == hashMove) {
+                    legalMoves.swap(0, i);
+                    break;
+                }
+            }
+        }
         int nbMovesLeft = legalMoves.size();
-        for(Move legalMove : legalMoves) {
-            budget += (maxBudget - nbNodesExplored) / (nbMovesLeft--);
+        for(int i=0; i<legalMoves.size(); i++) {
+            int legalMove = legalMoves.get(i);
+            budget += priorAllocation ?
+                      allocator.share(i, maxBudget - nbNodesExplored) :
+                      (maxBudget - nbNodesExplored) / nbMovesLeft;
+            nbMovesLeft--;
 
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, budget);
+            double eval = minimax(board, alpha, beta, budget, ply+1);
             board.undo();
+            if(priorAllocation) {
+                allocator.update(i, eval, alpha, beta, evaluation.getUnit());
+            }
 
             // update the best evaluation and prunning values
             if(turn == 0) {
-                bestEval = Double.max(bestEval, eval);
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 alpha = Double.max(alpha, eval);
             }
             else {
-                bestEval = Double.min(bestEval, eval);
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 beta = Double.min(beta, eval);
             }
             // prunne if necessary
@@ -97,6 +168,9 @@ public class AgentBudget extends Agent {
                 break;
             }
         }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
         return bestEval;
     }
 }
@@ -8,17 +8,24 @@ import java.util.Collections;
 
 public class AgentBudgetGain extends Agent {
     protected int totalBudget;
+    // the budget is shared evenly, or according to the prior of the moves
+    // (see BudgetAllocator)
+    protected boolean priorAllocation = false;
 
     public AgentBudgetGain(String name, int totalBudget, Evaluation evaluation) {
         super(name, evaluation);
         this.totalBudget = totalBudget;
     }
 
+    public void setPriorAllocation(boolean priorAllocation) {
+        this.priorAllocation = priorAllocation;
+    }
+
     public Move play(Board board) {
         int turn = board.getTurn();
         nbNodesExplored = 0;
 
-        Move toPlay = null;
+        int toPlay = -1;
 
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
@@ -27,16 +34,28 @@ public class AgentBudgetGain extends Agent {
         double alpha = Double.NEGATIVE_INFINITY;
         double beta = Double.POSITIVE_INFINITY;
         int budget = 0;
-        Vector<Move> legalMoves = board.getLegalMoves();
+        MoveList legalMoves = getMoveList(0);
+        board.getLegalMoves(legalMoves);
+        BudgetAllocator allocator = getAllocator(0);
+        if(priorAllocation) {
+            allocator.reset(board, legalMoves, -1);
+        }
         int nbMovesLeft = legalMoves.size();
 
         double currentEval = evaluation.evaluate(board);
-        for(Move legalMove : legalMoves) {
-            budget += (totalBudget - nbNodesExplored) / (nbMovesLeft--);
+        for(int i=0; i<legalMoves.size(); i++) {
+            int legalMove = legalMoves.get(i);
+            budget += priorAllocation ?
+                      allocator.share(i, totalBudget - nbNodesExplored) :
+                      (totalBudget - nbNodesExplored) / nbMovesLeft;
+            nbMovesLeft--;
 
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, budget, currentEval);
+            double eval = minimax(board, alpha, beta, budget, currentEval, 1);
             board.undo();
+            if(priorAllocation) {
+                allocator.update(i, eval, alpha, beta, evaluation.getUnit());
+            }
 
             // update the best evaluation and prunning values
             if(turn == 0) {
@@ -59,11 +78,12 @@ public class AgentBudgetGain extends Agent {
 
         System.out.println(name + " : The move was evaluated "
         + nbNodesExplored + " nodes to " + bestEval);
-        return toPlay;
+        return toPlay == -1 ? null : board.toMove(toPlay);
     }
 
     protected double minimax(Board board, double alpha, double beta,
-                             int maxBudget, double lastEval) {
+                             int maxBudget, double lastEval,
+                             int ply) {
         nbNodesExplored++;
         int turn = board.getTurn();
         double currentEval = evaluation.evaluate(board);
@@ -76,16 +96,28 @@ public class AgentBudgetGain extends Agent {
                           Double.POSITIVE_INFINITY;
 
         int budget = nbNodesExplored;
-        Vector<Move> legalMoves = board.getLegalMoves();
+        MoveList legalMoves = getMoveList(ply);
+        board.getLegalMoves(legalMoves);
+        BudgetAllocator allocator = getAllocator(ply);
+        if(priorAllocation) {
+            allocator.reset(board, legalMoves, -1);
+        }
         int nbMovesLeft = legalMoves.size();
-        for(Move legalMove : legalMoves) {
-            budget += (maxBudget - nbNodesExplored) / (nbMovesLeft--);
+        for(int i=0; i<legalMoves.size(); i++) {
+            int legalMove = legalMoves.get(i);
+            budget += priorAllocation ?
+                      allocator.share(i, maxBudget - nbNodesExplored) :
+                      (maxBudget - nbNodesExplored) / nbMovesLeft;
+            nbMovesLeft--;
 
             board.move(legalMove);
             double eval = minimax(board, alpha, beta,
-                      budget, currentEval);
+                      budget, currentEval, ply+1);
             board.undo();
             eval = 0.99 * eval + 0.01 * (lastEval - eval);
+            if(priorAllocation) {
+                allocator.update(i, eval, alpha, beta, evaluation.getUnit());
+            }
 
             // update the best evaluation and prunning values
             if(turn == 0) {
@@ -0,0 +1,329 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Multi-threaded version of AgentBudget. The budget of nodes of a position is
+shared between its moves, but the moves of the root and of the positions with
+a large budget (at least splitBudget nodes) are searched at the same time by
+fork/join tasks, each on its own copy of the board.
+The budget of such a position is kept in an atomic counter : a move takes its
+share (what is left divided by the number of moves left) when its search
+starts, and gives back what it did not use when it ends. The budget saved by
+a cutoff thus goes to the moves not started yet, or to the parent position
+once all the moves have started : a search already running does not get more.
+What is given back after the last move of the root started is not used, so
+the agent usually spends less than its budget, all the more when the last
+moves are refuted quickly. Idle threads steal the waiting moves of the other
+threads.
+As in AgentYBWC, the first move of a split position is searched alone to get
+a bound for the others, and a cutoff stops the searches of the other moves.
+The evaluation is shared by all the threads, it must not keep any state.
+*/
+public class AgentBudgetParallel extends Agent {
+    // below this budget, the moves of a position are searched by one thread
+    private static final int SPLIT_BUDGET = 4096;
+
+    protected int totalBudget;
+    private int splitBudget = SPLIT_BUDGET;
+    private ForkJoinPool pool;
+    private final LongAdder nodes = new LongAdder();
+    // lists of moves of the positions searched by one thread, per ply. A
+    // thread never waits for other tasks during such a search so they can not
+    // be mixed up
+    private final ThreadLocal<MoveList[]> moveLists =
+        ThreadLocal.withInitial(() -> new MoveList[0]);
+
+    public AgentBudgetParallel(String name, int totalBudget, Evaluation evaluation,
+                               int nbThreads) {
+        super(name, evaluation);
+        if(nbThreads <= 0) {
+            throw new IllegalArgumentException("Error in AgentBudgetParallel.<init> :"
+            + " The number of threads must be positive");
+        }
+        this.totalBudget = totalBudget;
+        pool = new ForkJoinPool(nbThreads);
+    }
+
+    public AgentBudgetParallel(String name, int totalBudget, Evaluation evaluation,
+                               int nbThreads, int hashSizeMB) {
+        this(name, totalBudget, evaluation, nbThreads);
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+    }
+
+    public void setSplitBudget(int splitBudget) {
+        this.splitBudget = splitBudget;
+    }
+
+    public Move play(Board board) {
+        nodes.reset();
+        if(table != null) {
+            table.newSearch();
+        }
+        int[] best = {-1};
+        Board position = board.clone();
+        pool.invoke(ForkJoinTask.adapt(() ->
+            splitSearch(position, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                        totalBudget, 0, null, new Counter(), best)));
+        nbNodesExplored = (int) Math.min(nodes.sum(), Integer.MAX_VALUE);
+        return best[0] == -1 ? null : board.toMove(best[0]);
+    }
+
+    // nodes of all the threads during the last search
+    public long getNbNodes() { return nodes.sum(); }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // nodes used by a search, only read and written by one thread at a time
+    private static final class Counter {
+        private long nodes = 0;
+    }
+
+    /*
+    Searches the position of board with a budget of nodes, counted in counter.
+    Returns NaN if a split position above it produced a cutoff, split being
+    the closest one
+    */
+    private double search(Board board, double alpha, double beta, long budget,
+                          int ply, SplitNode split, Counter counter) {
+        if(budget >= splitBudget) {
+            return splitSearch(board, alpha, beta, budget, ply, split, counter, null);
+        }
+        return minimax(board, alpha, beta, counter.nodes + budget, ply, split, counter);
+    }
+
+    /*
+    Search of a position whose moves are shared between the threads. If best
+    is not null, its first element receives the best move
+    */
+    private double splitSearch(Board board, double alpha, double beta, long budget,
+                               int ply, SplitNode split, Counter counter, int[] best) {
+        if(split != null && split.isAborted()) {
+            return Double.NaN;
+        }
+        int turn = board.getTurn();
+        if(board.gameOver() != 2) {
+            counter.nodes++;
+            nodes.increment();
+            return evaluation.evaluate(board);
+        }
+
+        int depth = 64 - Long.numberOfLeadingZeros(budget);
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(best == null && isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+        double bestEval = turn==0?
+                          Double.NEGATIVE_INFINITY :
+                          Double.POSITIVE_INFINITY;
+        int bestMove = -1;
+
+        MoveList legalMoves = new MoveList();
+        board.getLegalMoves(legalMoves);
+        int hashMove = hashMove(entry);
+        for(int i=1; i<legalMoves.size(); i++) {
+            if(legalMoves.get(i) == hashMove) {
+                legalMoves.swap(0, i);
+                break;
+            }
+        }
+        AtomicLong budgetLeft = new AtomicLong(budget);
+        AtomicInteger nbMovesLeft = new AtomicInteger(legalMoves.size());
+
+        // the first move is searched alone
+        int firstMove = legalMoves.get(0);
+        long share = takeShare(budgetLeft, nbMovesLeft);
+        Counter firstCounter = new Counter();
+        board.move(firstMove);
+        double eval = search(board, alpha, beta, share, ply+1, split, firstCounter);
+        board.undo();
+        budgetLeft.addAndGet(share - firstCounter.nodes);
+        if(Double.isNaN(eval)) {
+            counter.nodes += budget - budgetLeft.get();
+            return eval;
+        }
+        bestEval = eval;
+        bestMove = firstMove;
+
+        if(turn==0 ? eval < beta : eval > alpha) {
+            SplitNode node = new SplitNode(split, turn, turn==0 ? Double.max(alpha, eval) : alpha,
+                                           turn==0 ? beta : Double.min(beta, eval));
+            List<MoveTask> tasks = new ArrayList<MoveTask>();
+            for(int i=1; i<legalMoves.size(); i++) {
+                Board child = board.clone();
+                child.move(legalMoves.get(i));
+                tasks.add(new MoveTask(child, legalMoves.get(i), node, budgetLeft,
+                                       nbMovesLeft, ply+1));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            node.join(tasks, bestEval, bestMove);
+            bestEval = node.getBestEval();
+            bestMove = node.getBestMove();
+        }
+        counter.nodes += budget - budgetLeft.get();
+        if(split != null && split.isAborted()) {
+            return Double.NaN;
+        }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
+        if(best != null) {
+            best[0] = bestMove;
+        }
+        return bestEval;
+    }
+
+    // share of the budget left for the next move, taken from budgetLeft
+    private static long takeShare(AtomicLong budgetLeft, AtomicInteger nbMovesLeft) {
+        int nbMoves = Math.max(nbMovesLeft.getAndDecrement(), 1);
+        long left;
+        long share;
+        do {
+            left = budgetLeft.get();
+            share = Math.max(left, 0) / nbMoves;
+        } while(!budgetLeft.compareAndSet(left, left - share));
+        return share;
+    }
+
+    /*
+    Same search as AgentBudget.minimax(), by one thread : maxBudget is the
+    number of nodes counter must not go beyond. Unlike AgentBudget, a position
+    is a leaf as soon as nothing is left of its budget : each task starts with
+    its own counter, so the positions with an empty budget would otherwise be
+    expanded once per task
+    */
+    private double minimax(Board board, double alpha, double beta, long maxBudget,
+                           int ply, SplitNode split, Counter counter) {
+        if(split != null && split.isAborted()) {
+            return Double.NaN;
+        }
+        int turn = board.getTurn();
+
+        if(maxBudget <= counter.nodes || board.gameOver() != 2) {
+            counter.nodes++;
+            nodes.increment();
+            return evaluation.evaluate(board);
+        }
+
+        int depth = 64 - Long.numberOfLeadingZeros(maxBudget - counter.nodes);
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+
+        double bestEval = turn==0?
+                          Double.NEGATIVE_INFINITY :
+                          Double.POSITIVE_INFINITY;
+        int bestMove = -1;
+
+        long budget = counter.nodes;
+        MoveList legalMoves = getMoveList(ply);
+        board.getLegalMoves(legalMoves);
+        int hashMove = hashMove(entry);
+        for(int i=1; i<legalMoves.size(); i++) {
+            if(legalMoves.get(i) == hashMove) {
+                legalMoves.swap(0, i);
+                break;
+            }
+        }
+        int nbMovesLeft = legalMoves.size();
+        for(int i=0; i<legalMoves.size(); i++) {
+            int legalMove = legalMoves.get(i);
+            budget += (maxBudget - counter.nodes) / (nbMovesLeft--);
+
+            board.move(legalMove);
+            double eval = minimax(board, alpha, beta, budget, ply+1, split, counter);
+            board.undo();
+            if(Double.isNaN(eval)) {
+                return eval;
+            }
+
+            if(turn == 0) {
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                break;
+            }
+        }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
+        return bestEval;
+    }
+
+    protected MoveList getMoveList(int ply) {
+        MoveList[] lists = moveLists.get();
+        if(ply >= lists.length) {
+            MoveList[] newLists = new MoveList[Math.max(2*lists.length, ply+1)];
+            System.arraycopy(lists, 0, newLists, 0, lists.length);
+            for(int i=lists.length; i<newLists.length; i++) {
+                newLists[i] = new MoveList();
+            }
+            moveLists.set(newLists);
+            lists = newLists;
+        }
+        return lists[ply];
+    }
+
+    /*
+    Search of one move of a split position. The share of the budget is only
+    taken when the task starts
+    */
+    private class MoveTask extends SplitTask {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final AtomicLong budgetLeft;
+        private final AtomicInteger nbMovesLeft;
+        private final int ply;
+
+        MoveTask(Board board, int move, SplitNode node, AtomicLong budgetLeft,
+                 AtomicInteger nbMovesLeft, int ply) {
+            super(move, node);
+            this.board = board;
+            this.budgetLeft = budgetLeft;
+            this.nbMovesLeft = nbMovesLeft;
+            this.ply = ply;
+        }
+
+        protected double search(double alpha, double beta) {
+            long share = takeShare(budgetLeft, nbMovesLeft);
+            Counter counter = new Counter();
+            double eval = AgentBudgetParallel.this.search(board, alpha, beta, share, ply,
+                                                          node, counter);
+            budgetLeft.addAndGet(share - counter.nodes);
+            return eval;
+        }
+    }
+}
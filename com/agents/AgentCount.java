@@ -4,10 +4,9 @@ import com.agents.Agent;
 
 import com.gameEngine.Board;
 import com.gameEngine.Move;
+import com.gameEngine.MoveList;
 import com.gameEngine.Player;
 
-import java.util.Vector;
-
 public class AgentCount extends Agent {
     private int maxDepth;
 
@@ -18,11 +17,11 @@ public class AgentCount extends Agent {
 
     public Move play(Board board) {
         nbNodesExplored = 0;
-        countRec(board, maxDepth+1);
+        countRec(board, maxDepth+1, 0);
         return null;
     }
 
-    private void countRec(Board board, int depth) {
+    private void countRec(Board board, int depth, int ply) {
         if(depth == 0) {
             nbNodesExplored++;
             return;
@@ -30,23 +29,14 @@ public class AgentCount extends Agent {
         if(board.gameOver() != 2) {
             return;
         }
-        Vector<Move> legalMoves = board.getLegalMoves();
-        checkDuplicates(legalMoves);
-        for(Move legalMove : board.getLegalMoves()) {
-            if(legalMoves == null) { System.out.println("null"); }
-            board.move(legalMove);
-            countRec(board, depth-1);
-            board.undo();
-        }
-    }
-
-    private void checkDuplicates(Vector<Move> legalMoves) {
+        // the moves of each ply are kept in a reused list, the duplicates
+        // are caught by the perft numbers (see com.chess.Perft)
+        MoveList legalMoves = getMoveList(ply);
+        board.getLegalMoves(legalMoves);
         for(int i=0; i<legalMoves.size(); i++) {
-            for(int j=i+1; j<legalMoves.size(); j++) {
-                if(legalMoves.get(i).equals(legalMoves.get(j))) {
-                    System.out.println("Duplicate move : " + legalMoves.get(i));
-                }
-            }
+            board.move(legalMoves.get(i));
+            countRec(board, depth-1, ply+1);
+            board.undo();
         }
     }
 }
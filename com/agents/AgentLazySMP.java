@@ -0,0 +1,106 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Parallel search by Lazy SMP : nbThreads iterative deepening searches (see
+AgentSearch) run on their own copy of the board and only share the
+transposition table. The helper threads fill the table with the positions
+they search, which the main thread then finds already searched. Half of the
+helpers start one ply deeper so that the threads do not all search the same
+positions at the same time.
+The main thread keeps the time limit and its move is played, the helpers are
+stopped as soon as it returns.
+The evaluation is shared by all the threads, it must not keep any state.
+*/
+public class AgentLazySMP extends Agent {
+    private int nbThreads;
+    // searches[0] is the main thread
+    private AgentSearch[] searches;
+    private ExecutorService helpers;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    // nodes of all the threads, striped so that they do not contend
+    private final LongAdder nodes = new LongAdder();
+
+    public AgentLazySMP(String name, int maxDepth, Evaluation evaluation,
+                        int hashSizeMB, long timeLimit, int nbThreads) {
+        super(name, evaluation);
+        if(nbThreads <= 0) {
+            throw new IllegalArgumentException("Error in AgentLazySMP.<init> :"
+            + " The number of threads must be positive");
+        }
+        this.nbThreads = nbThreads;
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+        searches = new AgentSearch[nbThreads];
+        for(int i=0; i<nbThreads; i++) {
+            searches[i] = new AgentSearch(name + " " + i, maxDepth, evaluation);
+            searches[i].setTranspositionTable(table);
+            searches[i].shareSearch(stop, nodes, 1 + i%2);
+        }
+        searches[0].setTimeLimit(timeLimit);
+        if(nbThreads > 1) {
+            // the helpers must not keep the program alive after the game
+            helpers = Executors.newFixedThreadPool(nbThreads - 1, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public Move play(Board board) {
+        nodes.reset();
+        stop.set(false);
+        table.newSearch();
+
+        List<Future<Move>> results = new ArrayList<Future<Move>>(nbThreads - 1);
+        for(int i=1; i<nbThreads; i++) {
+            // the copies are made here, before the main thread uses board
+            Board copy = board.clone();
+            AgentSearch search = searches[i];
+            results.add(helpers.submit(() -> search.play(copy)));
+        }
+        Move toPlay = searches[0].play(board);
+        stop.set(true);
+        for(Future<Move> result : results) {
+            try {
+                result.get();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException e) {
+                throw new RuntimeException("Error in AgentLazySMP.play : A helper"
+                + " thread failed", e.getCause());
+            }
+        }
+        nbNodesExplored = (int) Math.min(nodes.sum(), Integer.MAX_VALUE);
+        return toPlay;
+    }
+
+    // nodes of all the threads during the last search
+    public long getNbNodes() { return nodes.sum(); }
+
+    public int getNbThreads() { return nbThreads; }
+
+    // depth completed by the main thread during the last search
+    public int getCompletedDepth() { return searches[0].getCompletedDepth(); }
+
+    /*
+    Stops the helper threads, the agent can not play anymore
+    */
+    public void shutdown() {
+        if(helpers != null) {
+            helpers.shutdown();
+        }
+    }
+}
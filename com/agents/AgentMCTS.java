@@ -0,0 +1,226 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.Random;
+
+/*
+Monte Carlo tree search with UCT. Each iteration :
+    - goes down the tree from the root, choosing at each node the child with
+      the best upper confidence bound : its average result plus an exploration
+      term for the children visited less than the others
+    - adds one new child to the tree
+    - plays a playout from it with the playout policy, for at most
+      playoutDepth plies, then scores the position reached : its result if the
+      game is over, the evaluation squashed into [0, 1] otherwise
+    - adds that result to all the nodes on the way back up
+The search stops after maxIterations iterations or timeLimit ms (0 for no
+limit), and the most visited move is played.
+The tree is kept between moves : the next search starts from the node of the
+position reached, with all the results already collected for it.
+*/
+public class AgentMCTS extends Agent {
+    // exploration constant of UCT, sqrt(2) for results in [0, 1]
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private int maxIterations;
+    private long timeLimit;
+    private double exploration = EXPLORATION;
+    private final Playout playout;
+    private boolean treeReuse = true;
+
+    private Random random = new Random();
+    private MoveList moves = new MoveList();
+    // node of the position after the last move played, kept for the next search
+    private Node root = null;
+    private int reusedVisits = 0;
+
+    public AgentMCTS(String name, Evaluation evaluation, int maxIterations, long timeLimit) {
+        super(name, evaluation);
+        if(maxIterations <= 0 && timeLimit <= 0) {
+            throw new IllegalArgumentException("Error in AgentMCTS.<init> :"
+            + " The search needs a number of iterations or a time limit");
+        }
+        this.maxIterations = maxIterations <= 0 ? Integer.MAX_VALUE : maxIterations;
+        this.timeLimit = timeLimit;
+        playout = new Playout(evaluation);
+    }
+
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    /*
+    An evaluation of evaluationScale gives the first player a result of 0.73
+    (1/(1+e^-1)), two units of Evaluation.getUnit() by default
+    */
+    public void setEvaluationScale(double evaluationScale) {
+        playout.setEvaluationScale(evaluationScale);
+    }
+
+    public void setPlayoutPolicy(PlayoutPolicy policy) {
+        playout.setPolicy(policy);
+    }
+
+    /*
+    The playouts stop after playoutDepth plies and the position is evaluated,
+    0 evaluates the new node itself. Without evaluation, the playouts always go
+    to the end of the game
+    */
+    public void setPlayoutDepth(int playoutDepth) {
+        playout.setDepth(playoutDepth);
+    }
+
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+        if(!treeReuse) {
+            root = null;
+        }
+    }
+
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    public Move play(Board board) {
+        long deadline = System.currentTimeMillis() + timeLimit;
+        Node start = treeReuse ? MCTSNode.findRoot(root, board) : null;
+        if(start == null) {
+            start = new Node(null, -1, board);
+        }
+        start.parent = null;
+        reusedVisits = start.visits;
+
+        int iterations = 0;
+        while(iterations < maxIterations
+        && (timeLimit <= 0 || System.currentTimeMillis() < deadline)) {
+            iterate(start, board);
+            iterations++;
+        }
+        nbNodesExplored = iterations;
+
+        Node best = start.mostVisited();
+        root = treeReuse ? best : null;
+        if(best == null) {
+            return null;
+        }
+        best.parent = null;
+        return board.toMove(best.move);
+    }
+
+    // visits of the root of the last search that came from the previous ones
+    public int getReusedVisits() { return reusedVisits; }
+
+    private void iterate(Node start, Board board) {
+        Node node = start;
+        int plies = 0;
+        // selection
+        while(node.result == 2 && node.untried != null && node.nbUntried == 0) {
+            node = node.select(exploration);
+            board.move(node.move);
+            plies++;
+        }
+        // expansion
+        if(node.result == 2) {
+            node.generateMoves(board);
+            int i = random.nextInt(node.nbUntried);
+            int move = node.untried[i];
+            node.untried[i] = node.untried[--node.nbUntried];
+            board.move(move);
+            plies++;
+            node = node.addChild(move, board);
+        }
+        // simulation
+        double value = playout.play(board, node.result, moves, random);
+        // backpropagation, each node counts the results of the player who
+        // played its move
+        while(node != null) {
+            node.visits++;
+            node.wins += node.turn == 0 ? value : 1 - value;
+            node = node.parent;
+        }
+        for(int i=0; i<plies; i++) {
+            board.undo();
+        }
+    }
+
+    private final class Node implements MCTSNode<Node> {
+        private Node parent;
+        // move leading to this node from its parent, -1 for a new root
+        private final int move;
+        private final long hash;
+        // player who played move, the results are counted for him
+        private final int turn;
+        // result of Board.gameOver() for the position
+        private final int result;
+        // moves not added to the tree yet, the first nbUntried ones. They are
+        // only generated when the node is expanded, most leaves never are
+        private int[] untried = null;
+        private int nbUntried = 0;
+        private Node[] children = null;
+        private int nbChildren = 0;
+        private int visits = 0;
+        private double wins = 0;
+
+        private Node(Node parent, int move, Board board) {
+            this.parent = parent;
+            this.move = move;
+            hash = board.getHash();
+            turn = 1 - board.getTurn();
+            result = board.gameOver();
+        }
+
+        public long getHash() { return hash; }
+
+        public int getNbChildren() { return nbChildren; }
+
+        public Node getChild(int i) { return children[i]; }
+
+        // board is at the position of the node
+        private void generateMoves(Board board) {
+            if(untried != null) {
+                return;
+            }
+            board.getLegalMoves(moves);
+            untried = new int[moves.size()];
+            for(int i=0; i<untried.length; i++) {
+                untried[i] = moves.get(i);
+            }
+            nbUntried = untried.length;
+            children = new Node[untried.length];
+        }
+
+        // the position of board is the one after move
+        private Node addChild(int move, Board board) {
+            Node child = new Node(this, move, board);
+            children[nbChildren++] = child;
+            return child;
+        }
+
+        private Node select(double exploration) {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for(int i=0; i<nbChildren; i++) {
+                Node child = children[i];
+                double value = MCTSNode.upperBound(child.wins / child.visits, child.visits,
+                                                   logVisits, exploration);
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private Node mostVisited() {
+            Node best = null;
+            for(int i=0; i<nbChildren; i++) {
+                if(best == null || children[i].visits > best.visits) {
+                    best = children[i];
+                }
+            }
+            return best;
+        }
+    }
+}
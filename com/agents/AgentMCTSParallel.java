@@ -0,0 +1,380 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Tree-parallel version of AgentMCTS : nbThreads threads run the iterations at
+the same time on one shared tree, each on its own copy of the board.
+Nothing is locked :
+    - the visits and results of a node are updated by atomic additions, the
+      results being kept in fixed point
+    - the moves of a node are generated by the first thread to expand it, and
+      each new child is claimed by an atomic counter so that a move is only
+      added once
+    - a thread going down through a node adds a virtual loss to it : it counts
+      as virtualLoss lost visits until the playout comes back, so that the
+      other threads rather go down other paths than wait for the same results
+The tree is kept between moves as in AgentMCTS. The evaluation and the
+playout policy are shared by all the threads, they must not keep any state.
+*/
+public class AgentMCTSParallel extends Agent {
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int VIRTUAL_LOSS = 3;
+    // results are added to the nodes in units of 1/WIN_UNIT
+    private static final long WIN_UNIT = 1 << 20;
+    // iterations taken at once from the shared count by a thread
+    private static final int ITERATION_BATCH = 32;
+
+    private int maxIterations;
+    private long timeLimit;
+    private int nbThreads;
+    private double exploration = EXPLORATION;
+    private final Playout playout;
+    private int virtualLoss = VIRTUAL_LOSS;
+    private boolean treeReuse = true;
+
+    private ExecutorService helpers;
+    // workers[0] is run by the thread calling play()
+    private Worker[] workers;
+    private final AtomicInteger iterationsLeft = new AtomicInteger();
+    private final LongAdder iterations = new LongAdder();
+    private Node root = null;
+    private int reusedVisits = 0;
+
+    public AgentMCTSParallel(String name, Evaluation evaluation, int maxIterations,
+                             long timeLimit, int nbThreads) {
+        super(name, evaluation);
+        if(maxIterations <= 0 && timeLimit <= 0) {
+            throw new IllegalArgumentException("Error in AgentMCTSParallel.<init> :"
+            + " The search needs a number of iterations or a time limit");
+        }
+        if(nbThreads <= 0) {
+            throw new IllegalArgumentException("Error in AgentMCTSParallel.<init> :"
+            + " The number of threads must be positive");
+        }
+        this.maxIterations = maxIterations <= 0 ? Integer.MAX_VALUE : maxIterations;
+        this.timeLimit = timeLimit;
+        playout = new Playout(evaluation);
+        this.nbThreads = nbThreads;
+        workers = new Worker[nbThreads];
+        for(int i=0; i<nbThreads; i++) {
+            workers[i] = new Worker();
+        }
+        if(nbThreads > 1) {
+            // the helpers must not keep the program alive after the game
+            helpers = Executors.newFixedThreadPool(nbThreads - 1, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    // see AgentMCTS.setEvaluationScale()
+    public void setEvaluationScale(double evaluationScale) {
+        playout.setEvaluationScale(evaluationScale);
+    }
+
+    public void setPlayoutPolicy(PlayoutPolicy policy) {
+        playout.setPolicy(policy);
+    }
+
+    // see AgentMCTS.setPlayoutDepth()
+    public void setPlayoutDepth(int playoutDepth) {
+        playout.setDepth(playoutDepth);
+    }
+
+    public void setVirtualLoss(int virtualLoss) {
+        this.virtualLoss = virtualLoss;
+    }
+
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+        if(!treeReuse) {
+            root = null;
+        }
+    }
+
+    public Move play(Board board) {
+        long deadline = System.currentTimeMillis() + timeLimit;
+        // the tree is not searched at this time
+        Node start = treeReuse ? MCTSNode.findRoot(root, board) : null;
+        if(start == null) {
+            start = new Node(-1, board, 0);
+        }
+        reusedVisits = start.visits;
+        iterationsLeft.set(maxIterations);
+        iterations.reset();
+
+        List<Future<?>> results = new ArrayList<Future<?>>(nbThreads - 1);
+        for(int i=1; i<nbThreads; i++) {
+            // the copies are made here, before the main thread uses board
+            Board copy = board.clone();
+            Worker worker = workers[i];
+            Node from = start;
+            results.add(helpers.submit(() -> worker.run(from, copy, deadline)));
+        }
+        workers[0].run(start, board, deadline);
+        for(Future<?> result : results) {
+            try {
+                result.get();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException e) {
+                throw new RuntimeException("Error in AgentMCTSParallel.play : A helper"
+                + " thread failed", e.getCause());
+            }
+        }
+        nbNodesExplored = (int) Math.min(iterations.sum(), Integer.MAX_VALUE);
+
+        Node best = start.mostVisited();
+        root = treeReuse ? best : null;
+        return best == null ? null : board.toMove(best.move);
+    }
+
+    // iterations of all the threads during the last search
+    public long getNbIterations() { return iterations.sum(); }
+
+    public int getNbThreads() { return nbThreads; }
+
+    // visits of the root of the last search that came from the previous ones
+    public int getReusedVisits() { return reusedVisits; }
+
+    /*
+    Stops the helper threads, the agent can not play anymore
+    */
+    public void shutdown() {
+        if(helpers != null) {
+            helpers.shutdown();
+        }
+    }
+
+    // takes at most ITERATION_BATCH iterations from the shared count
+    private int takeIterations() {
+        int left;
+        int taken;
+        do {
+            left = iterationsLeft.get();
+            taken = Math.min(left, ITERATION_BATCH);
+        } while(taken > 0 && !iterationsLeft.compareAndSet(left, left - taken));
+        return taken;
+    }
+
+    /*
+    Iterations of one thread, with its own board, random numbers and lists.
+    A worker is only used by one thread at a time
+    */
+    private final class Worker {
+        private final Random random = new Random();
+        private final MoveList moves = new MoveList();
+        // nodes below the root on the path of the current iteration
+        private Node[] path = new Node[64];
+
+        private void run(Node start, Board board, long deadline) {
+            int done = 0;
+            int taken;
+            while((taken = takeIterations()) > 0) {
+                for(int i=0; i<taken; i++) {
+                    if(timeLimit > 0 && System.currentTimeMillis() >= deadline) {
+                        iterations.add(done);
+                        return;
+                    }
+                    iterate(start, board);
+                    done++;
+                }
+            }
+            iterations.add(done);
+        }
+
+        private void iterate(Node start, Board board) {
+            Node node = start;
+            int plies = 0;
+            while(node.result == 2) {
+                Edges edges = node.expand(board, moves);
+                int i = node.claimChild(edges);
+                if(i >= 0) {
+                    // expansion, the new node starts with the virtual loss
+                    int move = edges.moves[i];
+                    board.move(move);
+                    Node child = new Node(move, board, virtualLoss);
+                    edges.children.set(i, child);
+                    node = child;
+                    push(node, plies++);
+                    break;
+                }
+                // selection, null if the only children are being created
+                Node next = node.select(edges, exploration);
+                if(next == null) {
+                    break;
+                }
+                next.addVisits(virtualLoss);
+                board.move(next.move);
+                node = next;
+                push(node, plies++);
+            }
+
+            double value = playout.play(board, node.result, moves, random);
+            // the virtual losses are replaced by the result
+            for(int i=plies-1; i>=0; i--) {
+                Node visited = path[i];
+                visited.addVisits(1 - virtualLoss);
+                visited.addWins(visited.turn == 0 ? value : 1 - value);
+                board.undo();
+            }
+            start.addVisits(1);
+        }
+
+        private void push(Node node, int ply) {
+            if(ply == path.length) {
+                Node[] newPath = new Node[2*path.length];
+                System.arraycopy(path, 0, newPath, 0, path.length);
+                path = newPath;
+            }
+            path[ply] = node;
+        }
+    }
+
+    // moves of a node and their children, created at once and never replaced
+    private static final class Edges {
+        private final int[] moves;
+        // null until the child is created
+        private final AtomicReferenceArray<Node> children;
+
+        private Edges(int[] moves) {
+            this.moves = moves;
+            children = new AtomicReferenceArray<Node>(moves.length);
+        }
+    }
+
+    private static final class Node implements MCTSNode<Node> {
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicLongFieldUpdater<Node> WINS =
+            AtomicLongFieldUpdater.newUpdater(Node.class, "wins");
+        private static final AtomicIntegerFieldUpdater<Node> NEXT_CHILD =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "nextChild");
+        private static final AtomicReferenceFieldUpdater<Node, Edges> EDGES =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Edges.class, "edges");
+
+        private final int move;
+        private final long hash;
+        // player who played move, the results are counted for him
+        private final int turn;
+        private final int result;
+        // null until the node is expanded
+        private volatile Edges edges = null;
+        // index of the next move to add to the tree
+        private volatile int nextChild = 0;
+        // visits, with the virtual losses of the threads below the node
+        private volatile int visits;
+        // sum of the results, in units of 1/WIN_UNIT
+        private volatile long wins = 0;
+
+        private Node(int move, Board board, int visits) {
+            this.move = move;
+            hash = board.getHash();
+            turn = 1 - board.getTurn();
+            result = board.gameOver();
+            this.visits = visits;
+        }
+
+        public long getHash() { return hash; }
+
+        public int getNbChildren() {
+            Edges current = edges;
+            return current == null ? 0 : current.children.length();
+        }
+
+        public Node getChild(int i) { return edges.children.get(i); }
+
+        private void addVisits(int delta) {
+            VISITS.getAndAdd(this, delta);
+        }
+
+        private void addWins(double value) {
+            WINS.getAndAdd(this, Math.round(value * WIN_UNIT));
+        }
+
+        // board is at the position of the node
+        private Edges expand(Board board, MoveList moves) {
+            Edges current = edges;
+            if(current != null) {
+                return current;
+            }
+            board.getLegalMoves(moves);
+            int[] legalMoves = new int[moves.size()];
+            for(int i=0; i<legalMoves.length; i++) {
+                legalMoves[i] = moves.get(i);
+            }
+            // another thread may have expanded the node in the meantime
+            EDGES.compareAndSet(this, null, new Edges(legalMoves));
+            return edges;
+        }
+
+        // index of a move to add to the tree, or -1 if all of them are
+        private int claimChild(Edges edges) {
+            if(nextChild >= edges.moves.length) {
+                return -1;
+            }
+            int i = NEXT_CHILD.getAndIncrement(this);
+            return i < edges.moves.length ? i : -1;
+        }
+
+        private Node select(Edges edges, double exploration) {
+            double logVisits = Math.log(Math.max(visits, 1));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for(int i=0; i<edges.children.length(); i++) {
+                Node child = edges.children.get(i);
+                if(child == null) {
+                    continue;
+                }
+                int childVisits = child.visits;
+                double value = childVisits <= 0 ?
+                               Double.POSITIVE_INFINITY :
+                               MCTSNode.upperBound((double) child.wins / WIN_UNIT / childVisits,
+                                                   childVisits, logVisits, exploration);
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        private Node mostVisited() {
+            Edges current = edges;
+            if(current == null) {
+                return null;
+            }
+            Node best = null;
+            for(int i=0; i<current.children.length(); i++) {
+                Node child = current.children.get(i);
+                if(child != null && (best == null || child.visits > best.visits)) {
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -5,17 +5,29 @@ import java.util.Vector;
 
 public class AgentMinimax extends Agent {
     private int maxDepth;
+    // one generator per ply : the captures are tried first and the quiet
+    // moves are only generated if they did not produce a cutoff
+    private StagedMoveGenerator[] generators = new StagedMoveGenerator[0];
 
     public AgentMinimax(String name, int maxDepth, Evaluation evaluation) {
         super(name, evaluation);
         this.maxDepth = maxDepth;
     }
 
+    public AgentMinimax(String name, int maxDepth, Evaluation evaluation,
+                        int hashSizeMB) {
+        this(name, maxDepth, evaluation);
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+    }
+
     public Move play(Board board) {
         int turn = board.getTurn();
         nbNodesExplored = 0;
+        if(table != null) {
+            table.newSearch();
+        }
 
-        Move toPlay = null;
+        int toPlay = -1;
 
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
@@ -24,9 +36,16 @@ public class AgentMinimax extends Agent {
         double alpha = Double.NEGATIVE_INFINITY;
         double beta = Double.POSITIVE_INFINITY;
 
-		for(Move legalMove : board.getLegalMoves()) {
+        MoveList moves = getMoveList(0);
+        board.getPseudoLegalMoves(moves);
+		for(int i=0; i<moves.size(); i++) {
+            int legalMove = moves.get(i);
+            // the legality is only checked for the moves that are explored
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, maxDepth);
+            double eval = minimax(board, alpha, beta, maxDepth, 1);
             board.undo();
             // update the best evaluation and prunning values
             if(turn == 0) {
@@ -49,10 +68,11 @@ public class AgentMinimax extends Agent {
 
         //System.out.println(name + " : The move was evaluated "
         //+ nbNodesExplored + " nodes to " + bestEval);
-        return toPlay;
+        return toPlay == -1 ? null : board.toMove(toPlay);
     }
 
-    private double minimax(Board board, double alpha, double beta, int depth) {
+    private double minimax(Board board, double alpha, double beta, int depth,
+                           int ply) {
         int turn = board.getTurn();
         int result = board.gameOver();
         if(depth == 0 || board.gameOver() != 2) {
@@ -60,20 +80,44 @@ public class AgentMinimax extends Agent {
             return evaluation.evaluate(board);
         }
 
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
                           Double.POSITIVE_INFINITY;
-        for(Move legalMove : board.getLegalMoves()) {
+        int bestMove = StagedMoveGenerator.NONE;
+        StagedMoveGenerator moves = getGenerator(ply);
+        moves.reset(board, hashMove(entry), StagedMoveGenerator.NONE,
+                    StagedMoveGenerator.NONE);
+        int legalMove;
+        while((legalMove = moves.next()) != StagedMoveGenerator.NONE) {
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, depth-1);
+            double eval = minimax(board, alpha, beta, depth-1, ply+1);
             board.undo();
             // update the best evaluation and prunning values
             if(turn == 0) {
-                bestEval = Double.max(bestEval, eval);
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 alpha = Double.max(alpha, eval);
             }
             else {
-                bestEval = Double.min(bestEval, eval);
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 beta = Double.min(beta, eval);
             }
             // prunne if necessary
@@ -81,6 +125,21 @@ public class AgentMinimax extends Agent {
                 break;
             }
         }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
         return bestEval;
     }
+
+    private StagedMoveGenerator getGenerator(int ply) {
+        if(ply >= generators.length) {
+            StagedMoveGenerator[] newGenerators = new StagedMoveGenerator[ply+1];
+            System.arraycopy(generators, 0, newGenerators, 0, generators.length);
+            for(int i=generators.length; i<=ply; i++) {
+                newGenerators[i] = new StagedMoveGenerator();
+            }
+            generators = newGenerators;
+        }
+        return generators[ply];
+    }
 }
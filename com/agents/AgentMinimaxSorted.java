@@ -2,41 +2,47 @@ package com.agents;
 
 import com.gameEngine.*;
 
-import java.util.Vector;
-import java.util.Map;
-import java.util.Collections;
-
 public class AgentMinimaxSorted extends Agent {
     protected int maxDepth;
+    // one ordering per ply, the moves are scored once per node
+    private MoveOrdering[] orderings = new MoveOrdering[0];
 
     public AgentMinimaxSorted(String name, int maxDepth, Evaluation evaluation) {
         super(name, evaluation);
         this.maxDepth = maxDepth;
     }
 
+    public AgentMinimaxSorted(String name, int maxDepth, Evaluation evaluation,
+                              int hashSizeMB) {
+        this(name, maxDepth, evaluation);
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+    }
+
     public Move play(Board board) {
         int turn = board.getTurn();
         nbNodesExplored = 0;
-
-        Move toPlay = null;
-        Vector<Move> legalMoves = board.getLegalMoves();
-        try {
-            Collections.sort(legalMoves);
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        if(table != null) {
+            table.newSearch();
         }
 
+        int toPlay = MoveOrdering.NONE;
+        MoveOrdering moves = getOrdering(0);
+        moves.reset(board);
+
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
                           Double.POSITIVE_INFINITY;
 
         double alpha = Double.NEGATIVE_INFINITY;
         double beta = Double.POSITIVE_INFINITY;
-        for(Move legalMove : board.getLegalMoves()) {
+        int legalMove;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            // the legality is only checked for the moves that are explored
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, maxDepth);
+            double eval = minimax(board, alpha, beta, maxDepth, 1);
             board.undo();
             // update the best evaluation and prunning values
             if(turn == 0) {
@@ -56,10 +62,11 @@ public class AgentMinimaxSorted extends Agent {
                 beta = Double.min(beta, eval);
             }
 		}
-        return toPlay;
+        return toPlay == MoveOrdering.NONE ? null : board.toMove(toPlay);
     }
 
-    protected double minimax(Board board, double alpha, double beta, int depth) {
+    protected double minimax(Board board, double alpha, double beta, int depth,
+                             int ply) {
         int turn = board.getTurn();
         int result = board.gameOver();
         if(depth == 0 || board.gameOver() != 2) {
@@ -67,30 +74,44 @@ public class AgentMinimaxSorted extends Agent {
             return evaluation.evaluate(board);
         }
 
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+
         double bestEval = turn==0?
                           Double.NEGATIVE_INFINITY :
                           Double.POSITIVE_INFINITY;
+        int bestMove = MoveOrdering.NONE;
 
-        Vector<Move> legalMoves = board.getLegalMoves();
-        try {
-            Collections.sort(legalMoves);
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-            return 0;
-        }
-
-        for(Move legalMove : board.getLegalMoves()) {
+        MoveOrdering moves = getOrdering(ply);
+        moves.reset(board, hashMove(entry), MoveOrdering.NONE, MoveOrdering.NONE);
+        int legalMove;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
             board.move(legalMove);
-            double eval = minimax(board, alpha, beta, depth-1);
+            double eval = minimax(board, alpha, beta, depth-1, ply+1);
             board.undo();
             // update the best evaluation and prunning values
             if(turn == 0) {
-                bestEval = Double.max(bestEval, eval);
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 alpha = Double.max(alpha, eval);
             }
             else {
-                bestEval = Double.min(bestEval, eval);
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
                 beta = Double.min(beta, eval);
             }
             // prunne if necessary
@@ -98,6 +119,21 @@ public class AgentMinimaxSorted extends Agent {
                 break;
             }
         }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
         return bestEval;
     }
+
+    protected MoveOrdering getOrdering(int ply) {
+        if(ply >= orderings.length) {
+            MoveOrdering[] newOrderings = new MoveOrdering[ply+1];
+            System.arraycopy(orderings, 0, newOrderings, 0, orderings.length);
+            for(int i=orderings.length; i<=ply; i++) {
+                newOrderings[i] = new MoveOrdering();
+            }
+            orderings = newOrderings;
+        }
+        return orderings[ply];
+    }
 }
@@ -0,0 +1,641 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Alpha-beta search by iterative deepening : the position is searched at depth 1,
+2, 3... until maxDepth is reached or the time given for the move is spent.
+Each iteration starts with the best move of the previous one, and the
+transposition table (if any) gives the best moves of the inner nodes, so the
+deeper iterations are well ordered and cost little more than a single search.
+When the time is up the current iteration is abandoned, and the move of the
+last completed iteration is played (or a better one found by the abandoned
+iteration after the previous best move was searched).
+By default the search is a principal variation search : the first move of a
+node is searched with the full window, the others are only checked to be
+worse than it with a null window, and searched again if they are not. Each
+iteration also starts with a window around the score of the previous one
+(aspiration window), widened when the score falls outside of it.
+The positions at the end of the main search are not evaluated in the middle of
+an exchange : a quiescence search goes on with the threats only (captures and
+promotions for chess), the player to move being free to stop them if the
+position is already good enough for him (stand pat).
+The quiet moves are ordered by what the search learnt about the previous
+nodes : the killer moves (the last 2 quiet moves that produced a cutoff at the
+same ply), the counter move (the last quiet move that produced a cutoff after
+the same move of the opponent) and the history (how often and how deep each
+move produced a cutoff).
+The search is also selective : a position so good that the player to move
+keeps it above the window even after passing his turn (null move) is cut
+after a shallower search, and the quiet moves that come late in the ordering
+are first searched with a reduced depth (late move reductions), the full depth
+being only used if they turn out better than expected.
+*/
+public class AgentSearch extends Agent {
+    // number of nodes between 2 readings of the clock
+    private static final int CLOCK_PERIOD = 1024;
+    // the windows and margins below are in units of Evaluation.getUnit()
+    // width of the windows used to prove that a move is not better than the
+    // first one, smaller than the differences the evaluations can tell apart
+    private static final double NULL_WINDOW = 1e-3;
+    // half width of the first aspiration window, doubled after each failure
+    // until it reaches MAX_ASPIRATION_WINDOW, then the window is left open
+    private static final double ASPIRATION_WINDOW = 0.25;
+    private static final double MAX_ASPIRATION_WINDOW = 4;
+    // the aspiration windows are not used for the first iterations whose
+    // scores are not stable enough
+    private static final int ASPIRATION_DEPTH = 3;
+    // a threat is not searched in the quiescence search if even winning its
+    // gain plus this margin does not bring the score up to the window
+    private static final double DELTA_MARGIN = 2;
+    // size of the history and counter move tables, indexed by the encoded
+    // moves (16 bits for chess)
+    private static final int NB_MOVE_CODES = 1 << 16;
+    // all the history is halved when a score reaches this limit, it must stay
+    // below the limit of MoveOrdering.setHistory()
+    private static final int MAX_HISTORY = 1 << 20;
+    // the null move is searched with a depth reduced by NULL_MOVE_REDUCTION
+    // (one more for the deep searches), only above NULL_MOVE_DEPTH
+    private static final int NULL_MOVE_DEPTH = 3;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    // the moves are only reduced from LMR_DEPTH, after the first LMR_MOVES
+    private static final int LMR_DEPTH = 3;
+    private static final int LMR_MOVES = 3;
+    // reduction of the depth by depth and by number of the move in the node,
+    // growing with the logarithm of both
+    private static final int[][] REDUCTIONS = new int[64][64];
+    static {
+        for(int depth=1; depth<64; depth++) {
+            for(int move=1; move<64; move++) {
+                REDUCTIONS[depth][move] = (int) (0.5 + Math.log(depth) * Math.log(move) / 2);
+            }
+        }
+    }
+
+    protected int maxDepth;
+    // time given for each move in milliseconds, no limit if it is not positive
+    protected long timeLimit;
+    // principal variation search and aspiration windows, or plain alpha-beta
+    protected boolean principalVariation = true;
+    protected boolean quiescence = true;
+    // null move pruning and late move reductions
+    protected boolean selective = true;
+    private long deadline;
+    private boolean aborted;
+    // set when the search is one of the threads of AgentLazySMP : the search
+    // also stops when stop is set, adds its nodes to nodeCounter and starts
+    // at firstDepth
+    private AtomicBoolean stop = null;
+    private LongAdder nodeCounter = null;
+    private int firstDepth = 1;
+    private int nbNodesSinceClock;
+    // depth and score of the last completed iteration
+    private int completedDepth;
+    private double score;
+    // best move of the last searchRoot(), NONE if it was aborted before the
+    // first move was searched
+    private int rootBest;
+    // one ordering per ply, the moves are scored once per node
+    private MoveOrdering[] orderings = new MoveOrdering[0];
+    // 2 killer moves per ply, and the move played at each ply of the current
+    // line (to find the counter move of the next ply)
+    private int[] killers = new int[0];
+    private int[] movesPlayed = new int[0];
+    private int[] history;
+    private int[] counterMoves;
+    // score of a won game, no need to search deeper once a win or a loss is
+    // found
+    private final double win;
+    // the windows in the scale of the evaluation
+    private final double nullWindow;
+    private final double aspirationWindow;
+    private final double maxAspirationWindow;
+    private final double deltaMargin;
+    // value of one unit of Board.threatGain() for the evaluation
+    private final double unit;
+
+    public AgentSearch(String name, int maxDepth, Evaluation evaluation) {
+        super(name, evaluation);
+        this.maxDepth = maxDepth;
+        unit = evaluation.getUnit();
+        win = evaluation.getWinScore();
+        nullWindow = NULL_WINDOW * unit;
+        aspirationWindow = ASPIRATION_WINDOW * unit;
+        maxAspirationWindow = MAX_ASPIRATION_WINDOW * unit;
+        deltaMargin = DELTA_MARGIN * unit;
+        this.timeLimit = 0;
+        history = new int[NB_MOVE_CODES];
+        counterMoves = new int[NB_MOVE_CODES];
+        Arrays.fill(counterMoves, MoveOrdering.NONE);
+    }
+
+    public AgentSearch(String name, int maxDepth, Evaluation evaluation,
+                       int hashSizeMB, long timeLimit) {
+        this(name, maxDepth, evaluation);
+        this.timeLimit = timeLimit;
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+    }
+
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public long getTimeLimit() { return timeLimit; }
+
+    public void setPrincipalVariation(boolean principalVariation) {
+        this.principalVariation = principalVariation;
+    }
+
+    public void setQuiescence(boolean quiescence) {
+        this.quiescence = quiescence;
+    }
+
+    public void setSelective(boolean selective) {
+        this.selective = selective;
+    }
+
+    public int getCompletedDepth() { return completedDepth; }
+
+    public double getScore() { return score; }
+
+    /*
+    Makes the search one of the threads of a parallel search. The table given
+    by setTranspositionTable() is then shared, and newSearch() must be called
+    on it once for all the threads
+    */
+    void shareSearch(AtomicBoolean stop, LongAdder nodeCounter, int firstDepth) {
+        this.stop = stop;
+        this.nodeCounter = nodeCounter;
+        this.firstDepth = firstDepth;
+    }
+
+    public Move play(Board board) {
+        nbNodesExplored = 0;
+        nbNodesSinceClock = 0;
+        completedDepth = 0;
+        score = 0;
+        aborted = false;
+        deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+        if(table != null && stop == null) {
+            table.newSearch();
+        }
+        // the killers are only valid for the previous position, the history
+        // is kept but the cutoffs of this search will count more
+        getOrdering(0);
+        Arrays.fill(killers, MoveOrdering.NONE);
+        ageHistory();
+
+        MoveList moves = getMoveList(0);
+        board.getLegalMoves(moves);
+        if(moves.isEmpty()) {
+            return null;
+        }
+        int toPlay = moves.get(0);
+        if(moves.size() == 1) {
+            return board.toMove(toPlay);
+        }
+        double eval = 0;
+        for(int depth=firstDepth; depth<=maxDepth; depth++) {
+            double alpha = Double.NEGATIVE_INFINITY;
+            double beta = Double.POSITIVE_INFINITY;
+            double window = aspirationWindow;
+            if(principalVariation && depth >= ASPIRATION_DEPTH && eval > -win
+            && eval < win) {
+                alpha = eval - window;
+                beta = eval + window;
+            }
+            while(true) {
+                // the best move found so far is searched first
+                moves.swap(0, moves.indexOf(toPlay));
+                eval = searchRoot(board, moves, depth, alpha, beta);
+                if(rootBest != MoveOrdering.NONE) {
+                    toPlay = rootBest;
+                }
+                if(aborted) {
+                    break;
+                }
+                // the score is outside of the window : only a bound is known,
+                // the side that failed is widened and the depth searched again
+                window *= 2;
+                if(eval <= alpha) {
+                    alpha = window > maxAspirationWindow ?
+                            Double.NEGATIVE_INFINITY : eval - window;
+                }
+                else if(eval >= beta) {
+                    beta = window > maxAspirationWindow ?
+                           Double.POSITIVE_INFINITY : eval + window;
+                }
+                else {
+                    break;
+                }
+            }
+            if(aborted) {
+                break;
+            }
+            completedDepth = depth;
+            score = eval;
+            if(eval >= win || eval <= -win) {
+                break;
+            }
+        }
+        if(nodeCounter != null) {
+            nodeCounter.add(nbNodesExplored);
+        }
+        return board.toMove(toPlay);
+    }
+
+    /*
+    Searches the root moves with the window [alpha, beta] and sets rootBest.
+    A move only replaces the first one if its score is inside the window : if
+    all the moves fail low, their scores are only bounds that cannot be
+    compared, and the first move is kept
+    */
+    private double searchRoot(Board board, MoveList moves, int depth,
+                              double alpha, double beta) {
+        int turn = board.getTurn();
+        double alphaStart = alpha;
+        double betaStart = beta;
+        rootBest = MoveOrdering.NONE;
+        double bestEval = turn==0?
+                          Double.NEGATIVE_INFINITY :
+                          Double.POSITIVE_INFINITY;
+        for(int i=0; i<moves.size(); i++) {
+            int legalMove = moves.get(i);
+            movesPlayed[0] = legalMove;
+            board.move(legalMove);
+            double eval = searchMove(board, alpha, beta, depth-1, 1, turn, i > 0, 0);
+            board.undo();
+            // the evaluation of an abandoned search is meaningless
+            if(aborted) {
+                return bestEval;
+            }
+            if(turn == 0) {
+                if(bestEval < eval) {
+                    bestEval = eval;
+                    if(i == 0 || eval > alphaStart) {
+                        rootBest = legalMove;
+                    }
+                }
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                if(bestEval > eval) {
+                    bestEval = eval;
+                    if(i == 0 || eval < betaStart) {
+                        rootBest = legalMove;
+                    }
+                }
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                break;
+            }
+        }
+        if(table != null) {
+            store(board, rootBest, bestEval, depth, alphaStart, betaStart);
+        }
+        return bestEval;
+    }
+
+    /*
+    Searches the position reached by a move of player turn. If reduction is
+    positive, the move is first searched with a reduced depth and is only
+    searched again if it beats the best score found so far. If scout is true
+    the move is then only compared to this score with a null window, and
+    searched with the full window if it is better
+    */
+    private double searchMove(Board board, double alpha, double beta, int depth,
+                              int ply, int turn, boolean scout, int reduction) {
+        if(reduction > 0) {
+            double eval;
+            if(turn == 0) {
+                eval = minimax(board, alpha, principalVariation ? alpha + nullWindow : beta,
+                               depth - reduction, ply);
+                if(aborted || eval <= alpha) {
+                    return eval;
+                }
+            }
+            else {
+                eval = minimax(board, principalVariation ? beta - nullWindow : alpha, beta,
+                               depth - reduction, ply);
+                if(aborted || eval >= beta) {
+                    return eval;
+                }
+            }
+        }
+        if(!scout || !principalVariation) {
+            return minimax(board, alpha, beta, depth, ply);
+        }
+        double eval;
+        if(turn == 0) {
+            eval = minimax(board, alpha, alpha + nullWindow, depth, ply);
+            if(aborted || eval <= alpha || eval >= beta) {
+                return eval;
+            }
+        }
+        else {
+            eval = minimax(board, beta - nullWindow, beta, depth, ply);
+            if(aborted || eval >= beta || eval <= alpha) {
+                return eval;
+            }
+        }
+        return minimax(board, alpha, beta, depth, ply);
+    }
+
+    protected double minimax(Board board, double alpha, double beta, int depth,
+                             int ply) {
+        if(isTimeUp()) {
+            return 0;
+        }
+        int turn = board.getTurn();
+        if(board.gameOver() != 2 || (depth == 0 && !quiescence)) {
+            nbNodesExplored++;
+            return evaluation.evaluate(board);
+        }
+        if(depth == 0) {
+            return quiescence(board, alpha, beta, ply);
+        }
+
+        long entry = TranspositionTable.MISS;
+        if(table != null) {
+            entry = table.probe(board.getHash());
+            if(isCutoff(entry, depth, alpha, beta)) {
+                return TranspositionTable.getScore(entry);
+            }
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+
+        getOrdering(ply);
+        int previousMove = movesPlayed[ply-1];
+        boolean check = board.isCheck();
+        // null move pruning, never twice in a row
+        if(selective && depth >= NULL_MOVE_DEPTH && previousMove != MoveOrdering.NONE
+        && !check && board.canPlayNullMove()) {
+            double eval = nullMoveSearch(board, alpha, beta, depth, ply, turn);
+            if(aborted) {
+                return 0;
+            }
+            if(turn == 0 ? eval >= beta : eval <= alpha) {
+                return eval;
+            }
+        }
+
+        double bestEval = turn==0?
+                          Double.NEGATIVE_INFINITY :
+                          Double.POSITIVE_INFINITY;
+        int bestMove = MoveOrdering.NONE;
+
+        MoveOrdering moves = getOrdering(ply);
+        moves.reset(board, hashMove(entry), killers[2*ply], killers[2*ply+1],
+                    previousMove == MoveOrdering.NONE ? MoveOrdering.NONE :
+                    counterMoves[previousMove]);
+        int legalMove;
+        int nbSearched = 0;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
+            movesPlayed[ply] = legalMove;
+            board.move(legalMove);
+            int reduction = 0;
+            if(selective && depth >= LMR_DEPTH && nbSearched >= LMR_MOVES && !check
+            && moves.isQuiet(legalMove) && legalMove != killers[2*ply]
+            && legalMove != killers[2*ply+1] && !board.isCheck()) {
+                reduction = Math.min(REDUCTIONS[Math.min(depth, 63)][Math.min(nbSearched, 63)],
+                                     depth - 2);
+            }
+            double eval = searchMove(board, alpha, beta, depth-1, ply+1, turn,
+                                     nbSearched > 0, reduction);
+            board.undo();
+            nbSearched++;
+            // nothing is stored for an abandoned search
+            if(aborted) {
+                return 0;
+            }
+            if(turn == 0) {
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                if(moves.isQuiet(legalMove)) {
+                    updateCutoff(legalMove, depth, ply);
+                }
+                break;
+            }
+        }
+        if(table != null) {
+            store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        }
+        return bestEval;
+    }
+
+    /*
+    Lets the player to move pass and searches the position with a reduced
+    depth and a null window around the bound he wants to beat. Returns a
+    score beyond the bound if the position is good enough to be cut
+    */
+    private double nullMoveSearch(Board board, double alpha, double beta,
+                                  int depth, int ply, int turn) {
+        // passing can not help if the position is already below the window
+        nbNodesExplored++;
+        double staticEval = evaluation.evaluate(board);
+        if(turn == 0 ? staticEval < beta : staticEval > alpha) {
+            return turn == 0 ? alpha : beta;
+        }
+        int reduction = NULL_MOVE_REDUCTION + (depth > 6 ? 1 : 0);
+        movesPlayed[ply] = MoveOrdering.NONE;
+        board.playNullMove();
+        double eval = turn == 0 ?
+                      minimax(board, beta - nullWindow, beta, depth - 1 - reduction, ply+1) :
+                      minimax(board, alpha, alpha + nullWindow, depth - 1 - reduction, ply+1);
+        board.undo();
+        // a win found after passing is not a proof of a win
+        if(eval >= win) {
+            return beta;
+        }
+        if(eval <= -win) {
+            return alpha;
+        }
+        return eval;
+    }
+
+    /*
+    Searches only the threats of the position until it is quiet (a finished
+    game is scored by the evaluation). The threats that lose material (by
+    Board.threatGain) are not searched, nor the ones that cannot bring the
+    score back in the window. A player in check cannot keep the position : all
+    the evasions are searched
+    */
+    protected double quiescence(Board board, double alpha, double beta, int ply) {
+        if(isTimeUp()) {
+            return 0;
+        }
+        int turn = board.getTurn();
+        nbNodesExplored++;
+        if(board.gameOver() != 2) {
+            return evaluation.evaluate(board);
+        }
+        if(board.isCheck()) {
+            return evasions(board, alpha, beta, ply);
+        }
+        // the player to move can keep the current position (stand pat)
+        double bestEval = evaluation.evaluate(board);
+        if(turn == 0) {
+            if(bestEval >= beta) {
+                return bestEval;
+            }
+            alpha = Double.max(alpha, bestEval);
+        }
+        else {
+            if(bestEval <= alpha) {
+                return bestEval;
+            }
+            beta = Double.min(beta, bestEval);
+        }
+        double standPat = bestEval;
+
+        MoveOrdering moves = getOrdering(ply);
+        moves.resetThreats(board);
+        int legalMove;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            int gain = moves.getLastScore();
+            // the threats are given by decreasing gain
+            if(gain < 0) {
+                break;
+            }
+            // delta pruning
+            double delta = gain * unit + deltaMargin;
+            if(turn == 0 ? standPat + delta <= alpha :
+                           standPat - delta >= beta) {
+                break;
+            }
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
+            board.move(legalMove);
+            double eval = quiescence(board, alpha, beta, ply+1);
+            board.undo();
+            if(aborted) {
+                return 0;
+            }
+            if(turn == 0) {
+                bestEval = Double.max(bestEval, eval);
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                bestEval = Double.min(bestEval, eval);
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                break;
+            }
+        }
+        return bestEval;
+    }
+
+    // quiescence() of a position in check, which has at least one legal move
+    private double evasions(Board board, double alpha, double beta, int ply) {
+        int turn = board.getTurn();
+        double bestEval = turn == 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        MoveOrdering moves = getOrdering(ply);
+        moves.reset(board);
+        int legalMove;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
+            board.move(legalMove);
+            double eval = quiescence(board, alpha, beta, ply+1);
+            board.undo();
+            if(aborted) {
+                return 0;
+            }
+            if(turn == 0) {
+                bestEval = Double.max(bestEval, eval);
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                bestEval = Double.min(bestEval, eval);
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                break;
+            }
+        }
+        return bestEval;
+    }
+
+    /*
+    Returns true if the search must be abandoned. The clock and the stop
+    signal are only read every CLOCK_PERIOD nodes. The time limit is never
+    applied before the first iteration is completed so that there is always a
+    move to play
+    */
+    protected boolean isTimeUp() {
+        if(!aborted && ++nbNodesSinceClock >= CLOCK_PERIOD) {
+            nbNodesSinceClock = 0;
+            aborted = (completedDepth > 0 && System.currentTimeMillis() >= deadline)
+                   || (stop != null && stop.get());
+        }
+        return aborted;
+    }
+
+    /* -----  Killers, counter moves and history  ----- */
+    // the quiet move played at ply produced a cutoff in a search of depth
+    private void updateCutoff(int move, int depth, int ply) {
+        if(killers[2*ply] != move) {
+            killers[2*ply+1] = killers[2*ply];
+            killers[2*ply] = move;
+        }
+        if(ply > 0 && movesPlayed[ply-1] != MoveOrdering.NONE) {
+            counterMoves[movesPlayed[ply-1]] = move;
+        }
+        // the deep cutoffs save more nodes than the ones near the leaves
+        history[move] += depth * depth;
+        if(history[move] >= MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for(int i=0; i<history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    /*
+    Returns the ordering of the moves at ply, the killers and the moves played
+    are kept as long as the orderings
+    */
+    protected MoveOrdering getOrdering(int ply) {
+        if(ply >= orderings.length) {
+            MoveOrdering[] newOrderings = new MoveOrdering[ply+1];
+            System.arraycopy(orderings, 0, newOrderings, 0, orderings.length);
+            for(int i=orderings.length; i<=ply; i++) {
+                newOrderings[i] = new MoveOrdering();
+                newOrderings[i].setHistory(history);
+            }
+            orderings = newOrderings;
+            int oldLength = killers.length;
+            killers = Arrays.copyOf(killers, 2*orderings.length);
+            Arrays.fill(killers, oldLength, killers.length, MoveOrdering.NONE);
+            movesPlayed = Arrays.copyOf(movesPlayed, orderings.length);
+        }
+        return orderings[ply];
+    }
+}
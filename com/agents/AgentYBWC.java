@@ -0,0 +1,203 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Parallel alpha-beta search by "young brothers wait" : at each node deep enough
+(at least splitDepth plies left), the first move is searched alone, then the
+other moves are searched in parallel by fork/join tasks, each on its own copy
+of the board. The first move usually gives a bound good enough for the others
+to be searched quickly, and if it produces a cutoff nothing is split.
+The bound of a split node is shared by its tasks and updated atomically, so a
+task starts with the best score found by the tasks finished before it. When a
+task produces a cutoff the split node is marked, and all the tasks below it
+give up at their next node.
+The search is to a fixed depth, by iterative deepening to fill the shared
+transposition table with the best moves. The evaluation is shared by all the
+threads, it must not keep any state.
+*/
+public class AgentYBWC extends Agent {
+    // below this number of plies left, the nodes are searched by one thread
+    private static final int SPLIT_DEPTH = 3;
+
+    protected int maxDepth;
+    private int splitDepth = SPLIT_DEPTH;
+    private ForkJoinPool pool;
+    private final LongAdder nodes = new LongAdder();
+    private double score = 0;
+    // orderings of the nodes searched by one thread, per ply. A thread never
+    // waits for other tasks during such a search so they can not be mixed up
+    private final ThreadLocal<MoveOrdering[]> orderings =
+        ThreadLocal.withInitial(() -> new MoveOrdering[0]);
+
+    public AgentYBWC(String name, int maxDepth, Evaluation evaluation,
+                     int hashSizeMB, int nbThreads) {
+        super(name, evaluation);
+        if(nbThreads <= 0) {
+            throw new IllegalArgumentException("Error in AgentYBWC.<init> :"
+            + " The number of threads must be positive");
+        }
+        this.maxDepth = maxDepth;
+        setTranspositionTable(new TranspositionTable(hashSizeMB));
+        pool = new ForkJoinPool(nbThreads);
+    }
+
+    public void setSplitDepth(int splitDepth) {
+        this.splitDepth = splitDepth;
+    }
+
+    public Move play(Board board) {
+        nodes.reset();
+        table.newSearch();
+        int[] best = {MoveOrdering.NONE};
+        Board position = board.clone();
+        for(int depth=1; depth<=maxDepth; depth++) {
+            int iteration = depth;
+            score = pool.invoke(ForkJoinTask.adapt(() ->
+                search(position, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                       iteration, 0, null, best)));
+        }
+        nbNodesExplored = (int) Math.min(nodes.sum(), Integer.MAX_VALUE);
+        return best[0] == MoveOrdering.NONE ? null : board.toMove(best[0]);
+    }
+
+    // nodes of all the threads during the last search
+    public long getNbNodes() { return nodes.sum(); }
+
+    // score of the move played at the last search
+    public double getScore() { return score; }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /*
+    Returns the score of the position of board, or NaN if the search was
+    given up because a split node above it produced a cutoff. split is the
+    closest split node above the position. If best is not null, its first
+    element receives the best move
+    */
+    private double search(Board board, double alpha, double beta, int depth,
+                          int ply, SplitNode split, int[] best) {
+        if(split != null && split.isAborted()) {
+            return Double.NaN;
+        }
+        int turn = board.getTurn();
+        if(depth == 0 || board.gameOver() != 2) {
+            nodes.increment();
+            return evaluation.evaluate(board);
+        }
+
+        long entry = table.probe(board.getHash());
+        if(best == null && isCutoff(entry, depth, alpha, beta)) {
+            return TranspositionTable.getScore(entry);
+        }
+        double alphaStart = alpha;
+        double betaStart = beta;
+        double bestEval = turn==0?
+                          Double.NEGATIVE_INFINITY :
+                          Double.POSITIVE_INFINITY;
+        int bestMove = MoveOrdering.NONE;
+
+        boolean parallel = depth >= splitDepth;
+        MoveOrdering moves = parallel ? new MoveOrdering() : getOrdering(ply);
+        moves.reset(board, hashMove(entry), MoveOrdering.NONE, MoveOrdering.NONE);
+        List<MoveTask> tasks = null;
+        SplitNode node = null;
+        int legalMove;
+        while((legalMove = moves.next()) != MoveOrdering.NONE) {
+            if(!board.isLegal(legalMove)) {
+                continue;
+            }
+            // the young brothers wait for the eldest one
+            if(parallel && bestMove != MoveOrdering.NONE) {
+                if(node == null) {
+                    node = new SplitNode(split, turn, alpha, beta);
+                    tasks = new ArrayList<MoveTask>();
+                }
+                Board child = board.clone();
+                child.move(legalMove);
+                tasks.add(new MoveTask(child, legalMove, node, depth-1, ply+1));
+                continue;
+            }
+            board.move(legalMove);
+            double eval = search(board, alpha, beta, depth-1, ply+1, split, null);
+            board.undo();
+            if(Double.isNaN(eval)) {
+                return eval;
+            }
+            if(turn == 0) {
+                if(eval > bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                alpha = Double.max(alpha, eval);
+            }
+            else {
+                if(eval < bestEval) {
+                    bestEval = eval;
+                    bestMove = legalMove;
+                }
+                beta = Double.min(beta, eval);
+            }
+            if(beta <= alpha) {
+                break;
+            }
+        }
+
+        if(tasks != null) {
+            ForkJoinTask.invokeAll(tasks);
+            if(split != null && split.isAborted()) {
+                return Double.NaN;
+            }
+            node.join(tasks, bestEval, bestMove);
+            bestEval = node.getBestEval();
+            bestMove = node.getBestMove();
+        }
+        store(board, bestMove, bestEval, depth, alphaStart, betaStart);
+        if(best != null && bestMove != MoveOrdering.NONE) {
+            best[0] = bestMove;
+        }
+        return bestEval;
+    }
+
+    private MoveOrdering getOrdering(int ply) {
+        MoveOrdering[] threadOrderings = orderings.get();
+        if(ply >= threadOrderings.length) {
+            MoveOrdering[] newOrderings = new MoveOrdering[ply+1];
+            System.arraycopy(threadOrderings, 0, newOrderings, 0, threadOrderings.length);
+            for(int i=threadOrderings.length; i<=ply; i++) {
+                newOrderings[i] = new MoveOrdering();
+            }
+            orderings.set(newOrderings);
+            threadOrderings = newOrderings;
+        }
+        return threadOrderings[ply];
+    }
+
+    // search of one move of a split node
+    private class MoveTask extends SplitTask {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int depth;
+        private final int ply;
+
+        MoveTask(Board board, int move, SplitNode node, int depth, int ply) {
+            super(move, node);
+            this.board = board;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        protected double search(double alpha, double beta) {
+            return AgentYBWC.this.search(board, alpha, beta, depth, ply, node, null);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.agents;
+
+import com.gameEngine.Board;
+
+/*
+Node of the tree of a Monte Carlo tree search, for the code shared by
+AgentMCTS and AgentMCTSParallel
+*/
+interface MCTSNode<N extends MCTSNode<N>> {
+    public long getHash();
+
+    // number of children, some of them may still be null
+    public int getNbChildren();
+
+    public N getChild(int i);
+
+    /*
+    Returns the node of the tree kept from the last search (root, null if
+    there is none) whose position is the one of board : the position after
+    the move played, or one of its children after a move of the opponent.
+    Returns null if there is none
+    */
+    public static <N extends MCTSNode<N>> N findRoot(N root, Board board) {
+        if(root == null) {
+            return null;
+        }
+        long hash = board.getHash();
+        if(root.getHash() == hash) {
+            return root;
+        }
+        for(int i=0; i<root.getNbChildren(); i++) {
+            N child = root.getChild(i);
+            if(child != null && child.getHash() == hash) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /*
+    Upper confidence bound (UCT) of a child visited visits times with an
+    average result of mean, logVisits being the log of the visits of its parent
+    */
+    public static double upperBound(double mean, int visits, double logVisits,
+                                    double exploration) {
+        return mean + exploration * Math.sqrt(logVisits / visits);
+    }
+}
@@ -0,0 +1,72 @@
+package com.agents;
+
+import com.gameEngine.*;
+
+import java.util.Random;
+
+/*
+Playouts of the Monte Carlo tree searches (AgentMCTS and AgentMCTSParallel).
+A playout plays the moves of the policy from a position, for at most
+playoutDepth plies, then scores the position reached for the first player in
+[0, 1] : its result if the game is over, the evaluation squashed by a
+logistic function otherwise. The settings are shared by all the threads of a
+search, each thread gives its own list of moves and random numbers
+*/
+final class Playout {
+    // an evaluation of EVALUATION_SCALE units (Evaluation.getUnit()) gives
+    // the first player a result of 0.73 (1/(1+e^-1))
+    private static final double EVALUATION_SCALE = 2;
+
+    private final Evaluation evaluation;
+    private double evaluationScale;
+    private PlayoutPolicy policy = PlayoutPolicy.RANDOM;
+    private int playoutDepth = Integer.MAX_VALUE;
+
+    Playout(Evaluation evaluation) {
+        this.evaluation = evaluation;
+        evaluationScale = evaluation == null ?
+                          EVALUATION_SCALE :
+                          EVALUATION_SCALE * evaluation.getUnit();
+    }
+
+    void setEvaluationScale(double evaluationScale) {
+        this.evaluationScale = evaluationScale;
+    }
+
+    void setPolicy(PlayoutPolicy policy) {
+        this.policy = policy;
+    }
+
+    // without evaluation, the playouts always go to the end of the game
+    void setDepth(int playoutDepth) {
+        this.playoutDepth = playoutDepth;
+    }
+
+    /*
+    Returns the result of a playout from the current position of board, whose
+    Board.gameOver() is result. board is left as it was
+    */
+    double play(Board board, int result, MoveList moves, Random random) {
+        int plies = 0;
+        while(result == 2 && (plies < playoutDepth || evaluation == null)) {
+            board.getLegalMoves(moves);
+            board.move(policy.choose(board, moves, random));
+            plies++;
+            result = board.gameOver();
+        }
+        double value;
+        if(result != 2) {
+            value = (result + 1) / 2.0;
+        }
+        else if(evaluation == null) {
+            value = 0.5;
+        }
+        else {
+            value = 1 / (1 + Math.exp(-evaluation.evaluate(board) / evaluationScale));
+        }
+        for(int i=0; i<plies; i++) {
+            board.undo();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,103 @@
+package com.agents;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Node of a parallel search whose moves are searched at the same time by several
+threads. The best score of the player to move is stored as the bits of a
+double so that it can be updated without lock, the other bound of the window
+does not change. When a move produces a cutoff the node is marked, and the
+searches below it (including the ones below its children split nodes) can
+give up.
+Once all the tasks are done, join() reads their scores in the order of the
+moves to find the best move and score of the node
+*/
+class SplitNode {
+    private final SplitNode parent;
+    private final int turn;
+    private final double alpha;
+    private final double beta;
+    private final AtomicLong bound;
+    private volatile boolean cutoff = false;
+    // set by join()
+    private double bestEval;
+    private int bestMove;
+
+    SplitNode(SplitNode parent, int turn, double alpha, double beta) {
+        this.parent = parent;
+        this.turn = turn;
+        this.alpha = alpha;
+        this.beta = beta;
+        bound = new AtomicLong(Double.doubleToLongBits(turn==0 ? alpha : beta));
+    }
+
+    int getTurn() { return turn; }
+
+    double getAlpha() {
+        return turn==0 ? Double.longBitsToDouble(bound.get()) : alpha;
+    }
+
+    double getBeta() {
+        return turn==0 ? beta : Double.longBitsToDouble(bound.get());
+    }
+
+    // the score of a move was found, the bound is moved if it is better
+    void update(double eval) {
+        long current;
+        do {
+            current = bound.get();
+            double value = Double.longBitsToDouble(current);
+            if(turn==0 ? eval <= value : eval >= value) {
+                break;
+            }
+        } while(!bound.compareAndSet(current, Double.doubleToLongBits(eval)));
+        if(turn==0 ? eval >= beta : eval <= alpha) {
+            cutoff = true;
+        }
+    }
+
+    // true if this node or one above it produced a cutoff
+    boolean isAborted() {
+        for(SplitNode node=this; node!=null; node=node.parent) {
+            if(node.cutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Reads the scores of the tasks, all done, after the moves searched alone
+    found bestEval with bestMove. Every score counts for the best score, but
+    a task that failed low only returned a bound, which can be equal to the
+    score of a move that really has it : a task only takes the best move with
+    a strictly better score, or with the same score if the best move so far
+    only had a bound
+    */
+    void join(List<? extends SplitTask> tasks, double bestEval, int bestMove) {
+        boolean exact = true;
+        for(SplitTask task : tasks) {
+            double eval = task.join();
+            if(Double.isNaN(eval)) {
+                continue;
+            }
+            boolean failedLow = task.failedLow(eval);
+            if(turn==0 ? eval > bestEval : eval < bestEval) {
+                bestEval = eval;
+                bestMove = task.move;
+                exact = !failedLow;
+            }
+            else if(eval == bestEval && !exact && !failedLow) {
+                bestMove = task.move;
+                exact = true;
+            }
+        }
+        this.bestEval = bestEval;
+        this.bestMove = bestMove;
+    }
+
+    double getBestEval() { return bestEval; }
+
+    int getBestMove() { return bestMove; }
+}
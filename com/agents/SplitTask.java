@@ -0,0 +1,45 @@
+package com.agents;
+
+import java.util.concurrent.RecursiveTask;
+
+/*
+Search of one move of a split node by a fork/join task, on its own copy of
+the board where the move is already played. The window is read when the task
+starts, with the best score found by the tasks already finished, and the
+score found moves the bound of the node
+*/
+abstract class SplitTask extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+
+    protected final int move;
+    protected final SplitNode node;
+    // window the search started with
+    private double alpha;
+    private double beta;
+
+    SplitTask(int move, SplitNode node) {
+        this.move = move;
+        this.node = node;
+    }
+
+    protected final Double compute() {
+        alpha = node.getAlpha();
+        beta = node.getBeta();
+        if(beta <= alpha || node.isAborted()) {
+            return Double.NaN;
+        }
+        double eval = search(alpha, beta);
+        if(!Double.isNaN(eval)) {
+            node.update(eval);
+        }
+        return eval;
+    }
+
+    // score of the move with the window [alpha, beta], NaN if it was given up
+    protected abstract double search(double alpha, double beta);
+
+    // true if the score is only a bound, the search failed low
+    boolean failedLow(double eval) {
+        return node.getTurn()==0 ? eval <= alpha : eval >= beta;
+    }
+}
@@ -1,10 +1,10 @@
 // java --class-path bin  com.chess.BenchmarkCorrectness 5
+// java --class-path bin  com.chess.BenchmarkCorrectness <depth> <position> <nb threads>
 package com.chess;
 
 import java.util.Vector;
 import java.lang.Math;
 
-import com.agents.AgentCount;
 import com.chess.*;
 
 public class BenchmarkCorrectness {
@@ -15,7 +15,8 @@ public class BenchmarkCorrectness {
         - (double) (runtime.freeMemory()/MEGABYTE);
 
         int depth = Integer.parseInt(args[0]);
-        long[] shannonNumbers = new long[6];
+        int nbThreads = args.length == 3 ? Integer.parseInt(args[2]) : 1;
+        long[] shannonNumbers = new long[7];
         String positionID = "";
         if(args.length == 1) {
             positionID = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
@@ -25,8 +26,9 @@ public class BenchmarkCorrectness {
             shannonNumbers[3] = 197281;
             shannonNumbers[4] = 4865609;
             shannonNumbers[5] = 119060324;
+            shannonNumbers[6] = 3195901860L;
         }
-        else if(args.length == 2) {
+        else if(args.length == 2 || args.length == 3) {
             if(args[1].equals("1")) {
                 positionID = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
                 shannonNumbers[0] = 20;
@@ -35,15 +37,16 @@ public class BenchmarkCorrectness {
                 shannonNumbers[3] = 197281;
                 shannonNumbers[4] = 4865609;
                 shannonNumbers[5] = 119060324;
+                shannonNumbers[6] = 3195901860L;
             }
-            if(args[1].equals("2")) {
+            else if(args[1].equals("2")) {
                 positionID = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - ";
                 shannonNumbers[0] = 48;
                 shannonNumbers[1] = 2039;
                 shannonNumbers[2] = 97862;
                 shannonNumbers[3] = 4085603	;
                 shannonNumbers[4] = 193690690;
-                //shannonNumbers[5] = 8031647685;
+                shannonNumbers[5] = 8031647685L;
             }
             else if(args[1].equals("3")) {
                 positionID = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - ";
@@ -53,6 +56,7 @@ public class BenchmarkCorrectness {
                 shannonNumbers[3] = 43238;
                 shannonNumbers[4] = 674624;
                 shannonNumbers[5] = 11030083;
+                shannonNumbers[6] = 178633661;
             }
             else if(args[1].equals("4")) {
                 positionID = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
@@ -73,12 +77,12 @@ public class BenchmarkCorrectness {
             }
             else if(args[1].equals("6")) {
                 positionID = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
-                shannonNumbers[0] = 45;
+                shannonNumbers[0] = 46;
                 shannonNumbers[1] = 2079;
                 shannonNumbers[2] = 89890;
                 shannonNumbers[3] = 3894594;
-                shannonNumbers[4] = 16407551;
-                //shannonNumbers[5] = 6923051137;
+                shannonNumbers[4] = 164075551;
+                shannonNumbers[5] = 6923051137L;
             }
             else {
                 System.out.println("Invalid position");
@@ -92,18 +96,18 @@ public class BenchmarkCorrectness {
 
 
 
-        AgentCount ac = new AgentCount("Count", 0);
-        ChessBoard board = new ChessBoard(positionID, ac, ac);
+        ChessBoard board = Perft.readPosition(positionID);
         System.out.println(board);
         System.out.println(board.getLegalMoves());
         boolean correct = true;
         for(int i=0; i<depth; i++) {
             long startTime = System.currentTimeMillis();
-            ac = new AgentCount("Count", i);
 
-            board = new ChessBoard(positionID, ac, ac);
-            ac.play(board);
-            long computed = ac.getNbNodesExplored();
+            board = Perft.readPosition(positionID);
+            Perft perft = new Perft(board);
+            long computed = nbThreads > 1 ?
+                            perft.parallelPerft(i+1, nbThreads, 2) :
+                            perft.perft(i+1);
             System.out.println("The shannon number " + i + " is : " + shannonNumbers[i]);
             System.out.println("My calculation is : " + computed);
             double newFreeMemory = (double) (runtime.totalMemory()/MEGABYTE)
@@ -113,7 +117,7 @@ public class BenchmarkCorrectness {
             System.out.println("Time for this iteration : "
             + ((double)(System.currentTimeMillis() - startTime))/1000 + " sec");
             System.out.println("Speed : "
-            + (Math.ceil(1000*((double) ac.getNbNodesExplored()/(System.currentTimeMillis() - startTime))))
+            + (Math.ceil(1000*((double) computed/(System.currentTimeMillis() - startTime))))
             + " nodes / sec\n");
             board = null;
             correct = correct && shannonNumbers[i] == computed;
@@ -0,0 +1,96 @@
+// java --class-path bin  com.chess.BenchmarkParallel
+// java --class-path bin  com.chess.BenchmarkParallel <nb threads> <nb runs>
+package com.chess;
+
+import com.agents.*;
+import com.gameEngine.Move;
+
+/*
+Checks that the parallel agents play moves as good with several threads as
+with one : on tactical positions, each run with nbThreads threads must play a
+move with the same score as the move played by one thread. The moves are
+scored again by a serial search of the position they lead to, as the score
+returned by a parallel search can be right while its move is not. The threads
+do not search the same nodes from one run to the next, so each position is
+played nbRuns times
+*/
+public class BenchmarkParallel {
+    private static final int budget = 20000;
+    private static final int depth = 4;
+    private static final int hashSizeMB = 16;
+
+    // positions with a mate in one for the player to move
+    private static final String[] positions = {
+        "r1bqkbnr/pppp1ppp/2n5/4p3/2B1P3/5Q2/PPPP1PPP/RNB1K1NR w KQkq - 2 3",
+        "rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq - 0 2",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+        "6rk/6pp/8/6N1/8/8/8/6K1 w - - 0 1"
+    };
+
+    public static void main(String[] args) {
+        int nbThreads = args.length >= 1 ?
+                        Integer.parseInt(args[0]) :
+                        Math.max(Runtime.getRuntime().availableProcessors(), 4);
+        int nbRuns = args.length >= 2 ? Integer.parseInt(args[1]) : 3;
+
+        boolean correct = true;
+        for(String positionID : positions) {
+            System.out.println(positionID);
+
+            AgentBudgetParallel budgetSerial = new AgentBudgetParallel("Budget 1", budget,
+                                               new ChessEvaluation(), 1, hashSizeMB);
+            AgentBudgetParallel budgetParallel = new AgentBudgetParallel("Budget " + nbThreads,
+                                                 budget, new ChessEvaluation(), nbThreads, hashSizeMB);
+            Move move = budgetSerial.play(Perft.readPosition(positionID));
+            double expected = moveScore(positionID, move);
+            System.out.println("AgentBudgetParallel, 1 thread : " + move + " (" + expected + ")");
+            for(int i=0; i<nbRuns; i++) {
+                move = budgetParallel.play(Perft.readPosition(positionID));
+                double score = moveScore(positionID, move);
+                System.out.println("AgentBudgetParallel, " + nbThreads + " threads : "
+                + move + " (" + score + ")");
+                correct = correct && score == expected;
+            }
+            budgetSerial.shutdown();
+            budgetParallel.shutdown();
+
+            AgentYBWC ybwcSerial = new AgentYBWC("YBWC 1", depth, new ChessEvaluation(),
+                                                 hashSizeMB, 1);
+            AgentYBWC ybwcParallel = new AgentYBWC("YBWC " + nbThreads, depth,
+                                                   new ChessEvaluation(), hashSizeMB, nbThreads);
+            move = ybwcSerial.play(Perft.readPosition(positionID));
+            expected = moveScore(positionID, move);
+            System.out.println("AgentYBWC, 1 thread : " + move + " (" + expected + ")");
+            for(int i=0; i<nbRuns; i++) {
+                move = ybwcParallel.play(Perft.readPosition(positionID));
+                double score = moveScore(positionID, move);
+                System.out.println("AgentYBWC, " + nbThreads + " threads : "
+                + move + " (" + score + ")");
+                correct = correct && score == expected;
+            }
+            ybwcSerial.shutdown();
+            ybwcParallel.shutdown();
+            System.out.println();
+        }
+        if(correct) {
+            System.out.println("The parallel searches are correct!!");
+        }
+        else {
+            System.out.println("/!\\ A parallel search played a worse move!!");
+        }
+    }
+
+    // score of the position reached by move, by a serial search
+    private static double moveScore(String positionID, Move move) {
+        ChessBoard board = Perft.readPosition(positionID);
+        board.move(move);
+        if(board.gameOver() != 2) {
+            return new ChessEvaluation().evaluate(board);
+        }
+        AgentYBWC search = new AgentYBWC("Reference", depth - 1, new ChessEvaluation(),
+                                         hashSizeMB, 1);
+        search.play(board);
+        search.shutdown();
+        return search.getScore();
+    }
+}
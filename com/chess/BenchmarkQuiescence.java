@@ -0,0 +1,41 @@
+// java --class-path bin  com.chess.BenchmarkQuiescence
+package com.chess;
+
+import com.agents.*;
+import com.gameEngine.Move;
+
+/*
+Checks that the quiescence search scores the positions it reaches at the
+horizon correctly : a search of depth 1 must give each position the score
+expected, which is only found if the player in check at the horizon cannot
+keep the position and has to play an evasion
+*/
+public class BenchmarkQuiescence {
+    private static final int depth = 1;
+
+    private static final String[] positions = {
+        // 1. Rxd8+ Qxd8 2. Qxd8# : after 1. Rxd8+ black is in check, and the
+        // only evasion lets white mate with a capture
+        "3r3k/6pp/8/q7/8/8/3R1PPP/3Q2K1 w - - 0 1",
+        // the same position with the colors swapped
+        "3q2k1/3r1ppp/8/8/Q7/8/6PP/3R3K b - - 0 1"
+    };
+    private static final double[] scores = {1000, -1000};
+
+    public static void main(String[] args) {
+        boolean correct = true;
+        for(int i=0; i<positions.length; i++) {
+            AgentSearch search = new AgentSearch("Quiescence", depth, new ChessEvaluation());
+            Move move = search.play(Perft.readPosition(positions[i]));
+            System.out.println(positions[i] + " : " + move + " (" + search.getScore()
+            + ", expected " + scores[i] + ")");
+            correct = correct && search.getScore() == scores[i];
+        }
+        if(correct) {
+            System.out.println("The quiescence search is correct!!");
+        }
+        else {
+            System.out.println("/!\\ A position was scored wrongly!!");
+        }
+    }
+}
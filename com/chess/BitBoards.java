@@ -0,0 +1,216 @@
+/*------------------------------------------------------------------------------
+---- Class Description ----
+BitBoards.java gathers the precomputed attack tables used by ChessBoard.
+A bitboard is a long in which bit i is set when the square i of the board
+(a1 = 0, b1 = 1, ..., h8 = 63) belongs to the set.
+
+Leaper attacks (knight, king and pawns) are read directly from tables indexed
+by the square. Slider attacks (rook, bishop and queen) are read from magic
+tables : the relevant blockers of the square are multiplied by a magic number
+and the high bits of the product give the index in the table of the square.
+The magic numbers were found by a random search and are only valid with the
+shifts computed in init().
+------------------------------------------------------------------------------*/
+package com.chess;
+
+public final class BitBoards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // PAWN_ATTACKS[player][square]
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+    // squares strictly between two aligned squares, 0 if they are not aligned
+    public static final long[][] BETWEEN = new long[64][64];
+    // whole line (rank, file or diagonal) going through two aligned squares
+    public static final long[][] LINE = new long[64][64];
+
+    private static final long[] ROOK_MAGICS = {
+        0x0080008040002010L, 0x2440400010002000L, 0x0200081040220080L, 0x090010010008A004L,
+        0x6080080002040080L, 0x0100040001000802L, 0x1500028100040E00L, 0x010000210000815AL,
+        0x4023002080010040L, 0x2200400040201000L, 0x001080100080200DL, 0x800200100A004020L,
+        0x0021000801000410L, 0x4152000200941048L, 0x4003000200010004L, 0x4482002408410482L,
+        0x8080024000200040L, 0x0690004000200040L, 0x0000820022001040L, 0x2000090010010020L,
+        0x0002110008010004L, 0x0212808002010400L, 0x0500040010610882L, 0x1001020020408104L,
+        0x2119004200208A01L, 0x1038200080400088L, 0x1800100080200082L, 0x0080080080801000L,
+        0x0400080080800400L, 0x0000020080800400L, 0x0021001900042200L, 0x2000288200030054L,
+        0x4040804000800022L, 0x5000210082004200L, 0x0381002001001042L, 0x0220808804801001L,
+        0x1021001005000800L, 0x8000040080800200L, 0x1010018804000210L, 0x0030140086000B41L,
+        0x8608843040008001L, 0x0002201000444000L, 0x4002820044120022L, 0x801100201001000CL,
+        0x0800040008008080L, 0x4004000201004040L, 0x4112081001040002L, 0x04019840AC020001L,
+        0x0000810044320200L, 0x8000804001002100L, 0x0000200080100080L, 0x00011200410A2200L,
+        0x1008051100880100L, 0x0240020004008080L, 0x804A480190420400L, 0x0000110090440200L,
+        0x2188810021904202L, 0x1440010080102041L, 0xA000120900422001L, 0x00B3003814209001L,
+        0xA006002004081002L, 0xA00D000204000801L, 0x0800408110080204L, 0x0809140904E04082L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+        0x0088020404002208L, 0x1244106228410801L, 0x0021021400400110L, 0x8A182240C0040824L,
+        0x0404042000480080L, 0x0802014420201000L, 0x030A011008854206L, 0x0283084044200808L,
+        0x482111640800A400L, 0x0080902400B88201L, 0x2200040820810110L, 0xAC18480681000000L,
+        0x2180040308400008L, 0x0048082804100002L, 0x0A60206210242000L, 0x000400404210300EL,
+        0x0008C01020084080L, 0x0089400208280081L, 0x0050001119020010L, 0xC0C2002022024040L,
+        0x0004060280A00051L, 0x1804200110082000L, 0x9600490401080808L, 0x000A0080AA190C21L,
+        0x8804040040902400L, 0x0048208004010210L, 0x8008040008084010L, 0x01C0404024010200L,
+        0x0840840002020200L, 0x00880200108A0102L, 0x2504A410010C0201L, 0x0014082044822108L,
+        0x0001114000100410L, 0x0001080202600410L, 0x0002010102100050L, 0x0500A40102100900L,
+        0x08041004802C0082L, 0x0010960880241000L, 0xC028084101004110L, 0x8801004503220104L,
+        0x0062083240000818L, 0x0006020220004321L, 0x0000084058013000L, 0x2128060102400C04L,
+        0x0000282100400400L, 0x8448100090200200L, 0x4002080828804108L, 0x2804080210440220L,
+        0x00008618200E0050L, 0x90022D0110100080L, 0x0009810080900000L, 0x80180C0041109201L,
+        0x0000000803040828L, 0x000B41085121041CL, 0x0004040454040080L, 0xC004010401120044L,
+        0x4102044042301008L, 0x0241002082082012L, 0x8001000422011008L, 0x1200400001084800L,
+        0x10000000C0104111L, 0x4008820803480208L, 0xC11004A012120218L, 0x02C0212240820080L
+    };
+
+    private static final long[] rookMasks = new long[64];
+    private static final long[] bishopMasks = new long[64];
+    private static final int[] rookShifts = new int[64];
+    private static final int[] bishopShifts = new int[64];
+    private static final long[][] rookTable = new long[64][];
+    private static final long[][] bishopTable = new long[64][];
+
+    private static final int[][] rookDirections = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] bishopDirections = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static {
+        init();
+    }
+
+    private BitBoards() {}
+
+/*------------------------------------------------------------------------------
+                                   LOOKUPS
+------------------------------------------------------------------------------*/
+    public static long bit(int square) { return 1L << square; }
+
+    public static int firstSquare(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    public static int count(long bitboard) { return Long.bitCount(bitboard); }
+
+    public static long rookAttacks(int square, long occupied) {
+        int index = (int) (((occupied & rookMasks[square]) * ROOK_MAGICS[square])
+                    >>> rookShifts[square]);
+        return rookTable[square][index];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        int index = (int) (((occupied & bishopMasks[square]) * BISHOP_MAGICS[square])
+                    >>> bishopShifts[square]);
+        return bishopTable[square][index];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+/*------------------------------------------------------------------------------
+                                INITIALIZATION
+------------------------------------------------------------------------------*/
+    private static void init() {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2},
+                               {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1},
+                             {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+        for(int square=0; square<64; square++) {
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, knightSteps);
+            KING_ATTACKS[square] = leaperAttacks(square, kingSteps);
+            PAWN_ATTACKS[0][square] = leaperAttacks(square, new int[][] {{-1, 1}, {1, 1}});
+            PAWN_ATTACKS[1][square] = leaperAttacks(square, new int[][] {{-1, -1}, {1, -1}});
+
+            rookMasks[square] = relevantBlockers(square, rookDirections);
+            bishopMasks[square] = relevantBlockers(square, bishopDirections);
+            rookShifts[square] = 64 - Long.bitCount(rookMasks[square]);
+            bishopShifts[square] = 64 - Long.bitCount(bishopMasks[square]);
+            rookTable[square] = fillTable(square, rookMasks[square], rookShifts[square],
+                                          ROOK_MAGICS[square], rookDirections);
+            bishopTable[square] = fillTable(square, bishopMasks[square], bishopShifts[square],
+                                            BISHOP_MAGICS[square], bishopDirections);
+        }
+        for(int from=0; from<64; from++) {
+            for(int to=0; to<64; to++) {
+                if(from == to) {
+                    continue;
+                }
+                if((rookAttacks(from, 0) & bit(to)) != 0) {
+                    BETWEEN[from][to] = rookAttacks(from, bit(to)) & rookAttacks(to, bit(from));
+                    LINE[from][to] = (rookAttacks(from, 0) & rookAttacks(to, 0))
+                                     | bit(from) | bit(to);
+                }
+                else if((bishopAttacks(from, 0) & bit(to)) != 0) {
+                    BETWEEN[from][to] = bishopAttacks(from, bit(to)) & bishopAttacks(to, bit(from));
+                    LINE[from][to] = (bishopAttacks(from, 0) & bishopAttacks(to, 0))
+                                     | bit(from) | bit(to);
+                }
+            }
+        }
+    }
+
+    private static long leaperAttacks(int square, int[][] steps) {
+        long attacks = 0;
+        for(int[] step : steps) {
+            int file = ChessBoard.getFile(square) + step[0];
+            int rank = ChessBoard.getRank(square) + step[1];
+            int destination = ChessBoard.square(file, rank);
+            if(destination != -1) {
+                attacks |= bit(destination);
+            }
+        }
+        return attacks;
+    }
+
+    // squares whose occupancy changes the attacks of a slider (edges excluded)
+    private static long relevantBlockers(int square, int[][] directions) {
+        long mask = 0;
+        for(int[] direction : directions) {
+            int file = ChessBoard.getFile(square) + direction[0];
+            int rank = ChessBoard.getRank(square) + direction[1];
+            while(ChessBoard.square(file + direction[0], rank + direction[1]) != -1) {
+                mask |= bit(ChessBoard.square(file, rank));
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    // attacks of a slider computed the slow way, used to fill the magic tables
+    private static long slideAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for(int[] direction : directions) {
+            int file = ChessBoard.getFile(square) + direction[0];
+            int rank = ChessBoard.getRank(square) + direction[1];
+            int destination = ChessBoard.square(file, rank);
+            while(destination != -1) {
+                attacks |= bit(destination);
+                if((occupied & bit(destination)) != 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+                destination = ChessBoard.square(file, rank);
+            }
+        }
+        return attacks;
+    }
+
+    private static long[] fillTable(int square, long mask, int shift, long magic,
+                                    int[][] directions) {
+        long[] table = new long[1 << (64 - shift)];
+        // enumerate all the subsets of the mask (Carry-Rippler trick)
+        long subset = 0;
+        do {
+            int index = (int) ((subset * magic) >>> shift);
+            table[index] = slideAttacks(square, subset, directions);
+            subset = (subset - mask) & mask;
+        } while(subset != 0);
+        return table;
+    }
+}
@@ -13,37 +13,83 @@ import com.agents.*;
 
 public class Chess {
     private static final int depth = 3;
+    // fixed depth of the parallel alpha-beta agent
+    private static final int analysisDepth = 6;
+    // the iterative deepening agent searches until maxSearchDepth is reached or
+    // timeLimit ms are spent on the move
+    private static final int maxSearchDepth = 64;
+    private static final long timeLimit = 5000;
+    private static final int hashSizeMB = 64;
+    private static final int nbThreads = Runtime.getRuntime().availableProcessors();
     private static final int budget = 50000;
+    // the Monte Carlo agents evaluate the new positions of their tree without
+    // playouts, they stop after timeLimit ms
+    private static final int mctsPlayoutDepth = 0;
+    // the budget agents give more nodes to the hash move and the captures
+    private static final boolean priorAllocation = true;
 
     private static Player getAgent(String agentName, String color) {
         if(agentName.equals("Human")) {
             return new Human(color + " Human");
         }
         if(agentName.equals("AgentBudget")) {
-            return new AgentBudget(color + " Agent Budget", 50000, new ChessEvaluation());
+            AgentBudget agent = new AgentBudget(color + " Agent Budget", 50000, new ChessEvaluation(), hashSizeMB);
+            agent.setPriorAllocation(priorAllocation);
+            return agent;
+        }
+        else if(agentName.equals("AgentBudgetParallel")) {
+            return new AgentBudgetParallel(color + " Agent Budget Parallel", budget, new ChessEvaluation(),
+                                           nbThreads, hashSizeMB);
         }
         else if(agentName.equals("AgentBudgetGain")) {
-            return new AgentBudgetGain(color + " Agent Budget Gain", budget, new ChessEvaluation());
+            AgentBudgetGain agent = new AgentBudgetGain(color + " Agent Budget Gain", budget, new ChessEvaluation());
+            agent.setPriorAllocation(priorAllocation);
+            return agent;
         }
         else if(agentName.equals("AgentMinimax")) {
-            return new AgentMinimax(color + " AgentMinimax", depth, new ChessEvaluation());
+            return new AgentMinimax(color + " AgentMinimax", depth, new ChessEvaluation(), hashSizeMB);
         }
         else if(agentName.equals("AgentMinimaxSorted")) {
-            return new AgentMinimaxSorted(color + " Agent Minimax Sorted", depth, new ChessEvaluation());
+            return new AgentMinimaxSorted(color + " Agent Minimax Sorted", depth, new ChessEvaluation(), hashSizeMB);
         }
         else if(agentName.equals("AgentNeuralBudget")) {
             NeuralNetwork nn = NeuralNetLoader.loadBestNN("", "Chess");
-            return new AgentBudget(color + " Agent Neural Budget", budget, new ChessEvaluationNeural(nn));
+            return new AgentBudget(color + " Agent Neural Budget", budget, new ChessEvaluationNeural(nn), hashSizeMB);
         }
         else if(agentName.equals("AgentNeuralMinimax")) {
             NeuralNetwork nn = NeuralNetLoader.loadBestNN("", "Chess");
-            return new AgentMinimax(color + " Agent Neural Minimax", depth, new ChessEvaluationNeural(nn));
+            return new AgentMinimax(color + " Agent Neural Minimax", depth, new ChessEvaluationNeural(nn), hashSizeMB);
+        }
+        else if(agentName.equals("AgentMCTS")) {
+            AgentMCTS agent = new AgentMCTS(color + " Agent MCTS", new ChessEvaluation(), 0, timeLimit);
+            agent.setPlayoutDepth(mctsPlayoutDepth);
+            return agent;
+        }
+        else if(agentName.equals("AgentMCTSParallel")) {
+            AgentMCTSParallel agent = new AgentMCTSParallel(color + " Agent MCTS Parallel", new ChessEvaluation(),
+                                                            0, timeLimit, nbThreads);
+            agent.setPlayoutDepth(mctsPlayoutDepth);
+            return agent;
+        }
+        else if(agentName.equals("AgentNeuralMCTS")) {
+            NeuralNetwork nn = NeuralNetLoader.loadBestNN("", "Chess");
+            AgentMCTS agent = new AgentMCTS(color + " Agent Neural MCTS", new ChessEvaluationNeural(nn), 0, timeLimit);
+            agent.setPlayoutDepth(mctsPlayoutDepth);
+            return agent;
         }
         else if(agentName.equals("AgentRandom")) {
             return new AgentRandom(color + "Agent Random");
         }
+        else if(agentName.equals("LazySMP")) {
+            return new AgentLazySMP(color + " Agent Lazy SMP", maxSearchDepth, new ChessEvaluation(),
+                                    hashSizeMB, timeLimit, nbThreads);
+        }
+        else if(agentName.equals("YBWC")) {
+            return new AgentYBWC(color + " Agent YBWC", analysisDepth, new ChessEvaluation(),
+                                 hashSizeMB, nbThreads);
+        }
         else if(agentName.equals("Search")) {
-            return new AgentSearch(color + " AgentSearch", depth, new ChessEvaluation());
+            return new AgentSearch(color + " Agent Search", maxSearchDepth, new ChessEvaluation(), hashSizeMB, timeLimit);
         }
         System.out.println("Unknown Agent \"" + agentName + "\"");
         return null;
@@ -52,8 +98,8 @@ public class Chess {
     public static void main(String[] args) {
         Player white, black;
         if(args.length == 0) {
-            white = new AgentMinimaxSorted("White", 1, new ChessEvaluation());
-            black = new AgentMinimaxSorted("Black", 1, new ChessEvaluation());
+            white = new AgentMinimaxSorted("White", 1, new ChessEvaluation(), hashSizeMB);
+            black = new AgentMinimaxSorted("Black", 1, new ChessEvaluation(), hashSizeMB);
         }
         else {
             white = getAgent(args[0], "White");
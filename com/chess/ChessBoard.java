@@ -13,6 +13,9 @@ Co-author : Lize Pirenne
 ---- Class Description ----
 Board.java is the center part of the implementation fo the rules of chess.
 Each instance board takes around 2700 bytes of memory.
+The position is stored twice : as an array of 64 squares (pieces) for the
+getters, and as one bitboard per piece and per player for the move generation
+(see BitBoards.java for the attack tables).
 
 Contructor :
     Board(Player white, Player black)
@@ -32,8 +35,8 @@ Contructor :
         Arguments :
             void
         Description :
-            Clone a board object. This is a deep cloning. The move stack is
-            however not cloned.
+            Clone a board object. This is a deep cloning, the move stack is
+            cloned as well so that the clone can take back the moves.
 
 Methods :
 --------------------------------------------------------------------------------
@@ -70,6 +73,9 @@ Methods :
             Function that will take back the last move and recover the state of
             the board before a move was made. (Does nothing if move 0 of the
             position)
+            Only the information destroyed by the move (taken piece, castling
+            rights, en passant square, 50 moves counter and hash) is kept on
+            the undo stack, the rest is played backward.
 
     int gameOver()
         Arguments :
@@ -107,6 +113,27 @@ Methods :
         Return :
             Vector<Move> legalMoves : A vector containing all the legal moves
                             available from the current position of the board.
+        Side note :
+            The legal moves are generated directly, using the checking and
+            pinned pieces : no move is played to test them.
+
+    Vector<Move> getPseudoLegalMoves()
+        Arguments :
+            void
+        Return :
+            Vector<Move> pseudoLegalMoves : A vector containing the moves
+                            following the rules of each piece. Some of them
+                            may leave the king in check.
+
+    boolean isLegal(Move move)
+        Arguments :
+            Move move : A move returned by getPseudoLegalMoves() in the current
+                        position
+        Return :
+            boolean legal : true if the move does not leave the king in check.
+        Side note :
+            The test uses the checking and pinned pieces of the position, no
+            move is played.
 
     int getTurn()
         Arguments :
@@ -119,6 +146,17 @@ Methods :
             int player : The player from which we want to get the control
         Return :
             int[] control : The control array of the player
+        Side note :
+            The array is maintained on each move and undo, it must be read
+            before the position changes and must not be modified.
+
+    boolean isSquareAttacked(int index, int player)
+        Arguments :
+            int index : The index of a square
+            int player : The player that may attack the square
+        Return :
+            boolean attacked : true if at least one piece of player attacks the
+                               square
 
 --------------------------------------------------------------------------------
                                     FORMAT
@@ -179,8 +217,7 @@ package com.chess;
 import com.gameEngine.*;
 
 import java.util.Vector;
-import java.util.Stack;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Random;
 import java.lang.IllegalArgumentException;
 
@@ -204,7 +241,27 @@ public class ChessBoard implements Board {
     private boolean printGame = false;
     public static boolean debug2 = false;
 
-    public static long[][] zobristTable = null;
+    // random keys XORed together to get the hash of a position
+    public static final long[][] zobristTable = new long[nbSquares][14];
+    public static final long[] zobristCastling = new long[16];
+    public static final long[] zobristEnPassant = new long[size];
+    public static final long zobristBlackToMove;
+
+    static {
+        Random r = new Random();
+        for(int i=0; i<nbSquares; i++) {
+            for(int j=0; j<14; j++) {
+                zobristTable[i][j] = r.nextLong();
+            }
+        }
+        for(int i=0; i<16; i++) {
+            zobristCastling[i] = r.nextLong();
+        }
+        for(int i=0; i<size; i++) {
+            zobristEnPassant[i] = r.nextLong();
+        }
+        zobristBlackToMove = r.nextLong();
+    }
 
 /*------------------------------------------------------------------------------
                                     PIECES
@@ -225,10 +282,20 @@ public class ChessBoard implements Board {
 
     public static final int BLACK = 7;
 
-    private static final int[] kingMove = {-9, -1, 7, -8, 8, -7, 1, 9};
-    private static final int[] knightMove = {-10, 6, -17, 15, -15, 17, -6, 10};
     private static final int[][] pawnMove = {{7, 8, 9}, {-9, -8, -7}};
 
+    // kinds of moves asked to the generator
+    private static final int THREATS = 1;
+    private static final int QUIET_MOVES = 2;
+    private static final int ALL_MOVES = THREATS | QUIET_MOVES;
+    // the moves are generated by updateLegalMoves(), they must be legal
+    private static final int LEGAL_ONLY = 4;
+
+    // values of the pieces in the exchanges of see(), the king can not be
+    // taken so it is worth more than anything it could capture
+    private static final int[] exchangeValues = {0, PAWN_VALUE, KNIGHT_VALUE,
+                                BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, 100};
+
     public static char pieceName(int piece) {
         switch(piece%BLACK) {
             case KING       : return 'K';
@@ -283,28 +350,48 @@ public class ChessBoard implements Board {
     private int turn;
 
     protected int[] pieces;
+    // one bitboard per piece (indexed by the piece value) and per player
+    protected long[] bitboards;
+    protected long[] occupancy;
     protected int[] kingIndex;
+    // number of pieces of each player attacking each square, kept up to date
+    // by putPiece() and clearSquare()
     protected int[][] control;
-    protected boolean[] castlingRights;
-    protected Vector<Move> legalMoves;
+    // bit i is set if the castling i is still allowed (see setCastlingRights)
+    protected int castlingRights;
+    // moves of the current position, packed as described in ChessMove
+    protected MoveList legalMoves;
+    protected MoveList pseudoLegalMoves;
+    // moves of a single piece, used to check moves coming from the search
+    private MoveList pieceMoves;
+    // swap list of see()
+    private int[] exchangeGains;
+    // pieces checking the king of the player to move and pieces of the player
+    // to move that can not leave the line between their king and a slider
+    protected long checkers;
+    protected long pinned;
     protected int nbMovesNoTake = 0;
     protected int nbMoves = 2;
     protected int enPassantIndex = -1;
-    protected HashMap<Long, Integer> playedPositions;
-
-    protected Move lastMove = null;
-
-    private Stack<BoardState> stateStack;
-
-    private boolean isDraw = false;
+    protected long hash;
+
+    // undo stack : only what cannot be recomputed when taking back a move is
+    // saved. The arrays are allocated once and only grow for very long games
+    private int[] playedMoves;
+    private int[] takenStack;
+    private int[] castlingStack;
+    private int[] enPassantStack;
+    private int[] nbMovesNoTakeStack;
+    private long[] hashStack;
+    private int nbPlayed = 0;
 
     private String startingPosition;
 
     private int result = 2;
     private boolean computedResult = false;
     private boolean computedLegalMoves = false;
-    protected boolean computedControlW = false;
-    protected boolean computedControlB = false;
+    private boolean computedPseudoLegalMoves = false;
+    private boolean computedPins = false;
 
 /*------------------------------------------------------------------------------
                                  CONSTRUCTORS
@@ -317,29 +404,52 @@ public class ChessBoard implements Board {
         construct("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", white, black);
     }
 
-    private ChessBoard(Player white, Player black, BoardState boardState) {
+    private ChessBoard(ChessBoard board) {
         players = new Player[2];
-        kingIndex = new int[2];
-        stateStack = new Stack<BoardState>();
-        players[0] = white;
-        players[1] = black;
-        boardState.recoverBoardState(this);
+        players[0] = board.players[0];
+        players[1] = board.players[1];
+        turn = board.turn;
+        startingPosition = board.startingPosition;
+
+        pieces = board.pieces.clone();
+        bitboards = board.bitboards.clone();
+        occupancy = board.occupancy.clone();
+        kingIndex = board.kingIndex.clone();
+        control = new int[2][];
+        control[0] = board.control[0].clone();
+        control[1] = board.control[1].clone();
+        castlingRights = board.castlingRights;
+        legalMoves = new MoveList();
+        pseudoLegalMoves = new MoveList();
+        pieceMoves = new MoveList();
+        exchangeGains = new int[32];
+        nbMovesNoTake = board.nbMovesNoTake;
+        nbMoves = board.nbMoves;
+        enPassantIndex = board.enPassantIndex;
+        hash = board.hash;
+
+        nbPlayed = board.nbPlayed;
+        playedMoves = board.playedMoves.clone();
+        takenStack = board.takenStack.clone();
+        castlingStack = board.castlingStack.clone();
+        enPassantStack = board.enPassantStack.clone();
+        nbMovesNoTakeStack = board.nbMovesNoTakeStack.clone();
+        hashStack = board.hashStack.clone();
     }
 
     private void construct(String boardID, Player white, Player black) {
-        if (zobristTable == null) {
-            zobristInit();
-        }
-
         startingPosition = boardID;
 
         players = new Player[2];
         players[0] = white;
         players[1] = black;
 
-        stateStack = new Stack<BoardState>();
+        allocateStack(256);
 
         pieces = new int[nbSquares];
+        bitboards = new long[2*BLACK];
+        occupancy = new long[2];
+        control = new int[2][nbSquares];
 
         kingIndex = new int[2];
         kingIndex[0] = -1;
@@ -350,28 +460,17 @@ public class ChessBoard implements Board {
             throw new IllegalArgumentException(errMsg);
         }
 
-        control = new int[2][nbSquares];
+        legalMoves = new MoveList();
+        pseudoLegalMoves = new MoveList();
+        pieceMoves = new MoveList();
+        exchangeGains = new int[32];
 
-        legalMoves = new Vector<Move>();
-
-        int initialCapacity = 200;
-        playedPositions = new HashMap<Long, Integer>(initialCapacity);
-        incrementInHashMap();
+        hash = computeHash();
         updateLegalMoves();
     }
 
     public ChessBoard clone() {
-        ChessBoard clone = new ChessBoard(players[0], players[1], new BoardState(this));
-        clone.nbMoves = this.nbMoves;
-        clone.turn = this.turn;
-
-        // clone the last state of the stateStack
-        if(!stateStack.isEmpty()) {
-            clone.stateStack.push(stateStack.peek());
-        }
-
-        clone.playedPositions = new HashMap<Long, Integer>(playedPositions);
-        return clone;
+        return new ChessBoard(this);
     }
 
 /*------------------------------------------------------------------------------
@@ -423,78 +522,316 @@ public class ChessBoard implements Board {
     }
 
     public void move(Move toPlay) {
-        move(toPlay, true);
-    }
-
-    private void move(Move toPlay, boolean updateLegalMoves) {
         if(toPlay == null) {
             throw new IllegalArgumentException("Error in ChessBoard.move :"
             + " The move provided was null");
         }
-        // save the current state of the board before playing the move
-        lastMove = toPlay;
-        stateStack.push(new BoardState(this));
-        ChessMove move = (ChessMove) toPlay;
+        move(((ChessMove) toPlay).encode());
+    }
+
+    public void move(int move) {
+        // save what the move will destroy
+        if(nbPlayed == playedMoves.length) {
+            allocateStack(2*nbPlayed);
+        }
+        int origin = ChessMove.originOf(move);
+        int destination = ChessMove.destinationOf(move);
+        int flag = ChessMove.flagOf(move);
+        int moving = pieces[origin];
+        int taken = flag == ChessMove.FLAG_EN_PASSANT ?
+                    pieces[destination + (turn==0? -8 : 8)] :
+                    pieces[destination];
+        playedMoves[nbPlayed] = move;
+        castlingStack[nbPlayed] = castlingRights;
+        enPassantStack[nbPlayed] = enPassantIndex;
+        nbMovesNoTakeStack[nbPlayed] = nbMovesNoTake;
+        hashStack[nbPlayed] = hash;
+        takenStack[nbPlayed] = taken;
+        nbPlayed++;
+        nbMoves++;
+
+        if(move == ChessMove.RESIGNATION) {
+            turn = 1 - turn;
+            result = turn==0 ? 1 : -1;
+            computedResult = true;
+            return;
+        }
+
+        // remove the state of the old position from the hash
+        hash ^= enPassantKey() ^ zobristCastling[castlingRights];
 
         // play the move
-        makeMove(move);
+        makeMove(move, moving);
         // save for en passant
-        if(move.isPawnPush2()) {
-            enPassantIndex = move.getDestination() + (turn==0? -8 : 8);
+        if(flag == ChessMove.FLAG_DOUBLE_PUSH) {
+            enPassantIndex = destination + (turn==0? -8 : 8);
         }
         else { enPassantIndex = -1; }
         turn = 1 - turn;
+        updateCastlingRights();
+        hash ^= zobristBlackToMove ^ enPassantKey() ^ zobristCastling[castlingRights];
 
         // update the 50 move counter
-        if(move.getTaken() == UNDEFINED
-        && move.getMoving()%BLACK != PAWN) {
+        if(taken == UNDEFINED
+        && moving%BLACK != PAWN) {
             nbMovesNoTake++;
         }
         else {
+            // the previous positions can not be repeated anymore
             nbMovesNoTake = 0;
-            playedPositions.clear();
         }
 
         // reset computed booleans
         computedResult = false;
-        computedControlW = false;
-        computedControlB = false;
         computedLegalMoves = false;
+        computedPseudoLegalMoves = false;
+        computedPins = false;
+    }
+
+    public void undo() {
+        if(nbPlayed == 0) {
+            return;
+        }
+        nbPlayed--;
+        nbMoves--;
+        turn = 1 - turn;
+        computedResult = false;
+        int move = playedMoves[nbPlayed];
+        if(move == ChessMove.RESIGNATION) {
+            return;
+        }
 
-        // update HashMap
-        incrementInHashMap();
+        if(move != ChessMove.NULL_MOVE) {
+            unmakeMove(move, takenStack[nbPlayed]);
+        }
+        castlingRights = castlingStack[nbPlayed];
+        enPassantIndex = enPassantStack[nbPlayed];
+        nbMovesNoTake = nbMovesNoTakeStack[nbPlayed];
+        hash = hashStack[nbPlayed];
 
-        // update the derived state of the board
-        updateCastlingRights();
-        // does not update while in recursive call (updateLegalMoves->addMove->move)
-        // to prevent infinite recursion
-        if(updateLegalMoves) {
-            updateLegalMoves();
+        computedLegalMoves = false;
+        computedPseudoLegalMoves = false;
+        computedPins = false;
+    }
+
+    public void playNullMove() {
+        if(nbPlayed == playedMoves.length) {
+            allocateStack(2*nbPlayed);
         }
+        playedMoves[nbPlayed] = ChessMove.NULL_MOVE;
+        castlingStack[nbPlayed] = castlingRights;
+        enPassantStack[nbPlayed] = enPassantIndex;
+        nbMovesNoTakeStack[nbPlayed] = nbMovesNoTake;
+        hashStack[nbPlayed] = hash;
+        takenStack[nbPlayed] = UNDEFINED;
+        nbPlayed++;
         nbMoves++;
-    }
 
-    public void undo() {
+        hash ^= enPassantKey();
+        enPassantIndex = -1;
         turn = 1 - turn;
-        // recover the derived state of the board
-        stateStack.pop().recoverBoardState(this);
+        hash ^= zobristBlackToMove;
+        // the positions before the null move are not repetitions of the ones
+        // after it
+        nbMovesNoTake = 0;
 
         computedResult = false;
-        computedLegalMoves = true;
-        nbMoves--;
+        computedLegalMoves = false;
+        computedPseudoLegalMoves = false;
+        computedPins = false;
+    }
+
+    public boolean canPlayNullMove() {
+        long pawnsAndKing = bitboards[PAWN + turn*BLACK] | bitboards[KING + turn*BLACK];
+        return (occupancy[turn] & ~pawnsAndKing) != 0 && !isCheck(turn);
+    }
+
+    public boolean isCheck() {
+        return isCheck(turn);
+    }
+
+    private void allocateStack(int capacity) {
+        if(playedMoves == null) {
+            playedMoves = new int[capacity];
+            takenStack = new int[capacity];
+            castlingStack = new int[capacity];
+            enPassantStack = new int[capacity];
+            nbMovesNoTakeStack = new int[capacity];
+            hashStack = new long[capacity];
+            return;
+        }
+        playedMoves = Arrays.copyOf(playedMoves, capacity);
+        takenStack = Arrays.copyOf(takenStack, capacity);
+        castlingStack = Arrays.copyOf(castlingStack, capacity);
+        enPassantStack = Arrays.copyOf(enPassantStack, capacity);
+        nbMovesNoTakeStack = Arrays.copyOf(nbMovesNoTakeStack, capacity);
+        hashStack = Arrays.copyOf(hashStack, capacity);
     }
 
     public Vector<Move> getLegalMoves() {
-        if(!computedLegalMoves) {
-            updateLegalMoves();
+        updateLegalMoves();
+        return toVector(legalMoves);
+    }
+
+    public void getLegalMoves(MoveList moves) {
+        updateLegalMoves();
+        moves.copy(legalMoves);
+    }
+
+    public Vector<Move> getPseudoLegalMoves() {
+        updatePseudoLegalMoves();
+        return toVector(pseudoLegalMoves);
+    }
+
+    public void getPseudoLegalMoves(MoveList moves) {
+        updatePseudoLegalMoves();
+        moves.copy(pseudoLegalMoves);
+    }
+
+    public void getThreats(MoveList moves) {
+        generateMoves(moves, THREATS);
+    }
+
+    public void getQuietMoves(MoveList moves) {
+        generateMoves(moves, QUIET_MOVES);
+    }
+
+    public boolean isPseudoLegal(int move) {
+        int origin = ChessMove.originOf(move);
+        if(move == ChessMove.RESIGNATION || pieces[origin] == UNDEFINED
+        || pieces[origin]/BLACK != turn) {
+            return false;
         }
-        return new Vector<Move>(legalMoves);
+        pieceMoves.clear();
+        pieceMoves(origin, pieceMoves, ALL_MOVES, -1L);
+        return pieceMoves.contains(move);
+    }
+
+    public int threatGain(int move) {
+        return see(move);
+    }
+
+    /*
+    Static exchange evaluation : material won by the player to move when the
+    move is played and both players then take back on the destination square
+    with their least valuable piece, each of them being free to stop taking
+    */
+    public int see(int move) {
+        int flag = ChessMove.flagOf(move);
+        if(move == ChessMove.RESIGNATION || flag == ChessMove.FLAG_SHORT_CASTLE
+        || flag == ChessMove.FLAG_LONG_CASTLE) {
+            return 0;
+        }
+        int origin = ChessMove.originOf(move);
+        int destination = ChessMove.destinationOf(move);
+        int[] gain = exchangeGains;
+        long occupied = occupied() ^ BitBoards.bit(origin);
+        int onSquare = pieces[origin]%BLACK;
+
+        if(flag == ChessMove.FLAG_EN_PASSANT) {
+            gain[0] = PAWN_VALUE;
+            occupied ^= BitBoards.bit(destination + (turn==0? -8 : 8));
+        }
+        else {
+            gain[0] = exchangeValues[pieces[destination]%BLACK];
+        }
+        if(ChessMove.isPromotion(move)) {
+            onSquare = ChessMove.promotedPiece(move, 0);
+            gain[0] += exchangeValues[onSquare] - PAWN_VALUE;
+        }
+
+        long diagonal = bitboards[BISHOP] | bitboards[BISHOP + BLACK]
+                      | bitboards[QUEEN] | bitboards[QUEEN + BLACK];
+        long straight = bitboards[ROOK] | bitboards[ROOK + BLACK]
+                      | bitboards[QUEEN] | bitboards[QUEEN + BLACK];
+        long attackers = attackersTo(destination, occupied) & occupied;
+        int player = 1 - turn;
+        int depth = 0;
+        while(true) {
+            long own = attackers & occupancy[player];
+            if(own == 0) {
+                break;
+            }
+            // least valuable attacker
+            int piece = PAWN;
+            long candidates = own & bitboards[PAWN + player*BLACK];
+            while(candidates == 0) {
+                piece++;
+                candidates = own & bitboards[piece + player*BLACK];
+            }
+            depth++;
+            gain[depth] = exchangeValues[onSquare] - gain[depth-1];
+            occupied ^= candidates & -candidates;
+            // the sliders behind the piece that took are now attacking
+            attackers |= (BitBoards.bishopAttacks(destination, occupied) & diagonal)
+                       | (BitBoards.rookAttacks(destination, occupied) & straight);
+            attackers &= occupied;
+            onSquare = piece;
+            player = 1 - player;
+        }
+        while(depth > 0) {
+            gain[depth-1] = -Math.max(-gain[depth-1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    public Move toMove(int move) {
+        return ChessMove.decode(this, move);
+    }
+
+    private Vector<Move> toVector(MoveList moves) {
+        Vector<Move> toReturn = new Vector<Move>(moves.size());
+        for(int i=0; i<moves.size(); i++) {
+            toReturn.add(ChessMove.decode(this, moves.get(i)));
+        }
+        return toReturn;
+    }
+
+    public boolean isLegal(Move move) {
+        return move.isResignation() || isLegal(((ChessMove) move).encode());
+    }
+
+    public boolean isLegal(int move) {
+        int flag = ChessMove.flagOf(move);
+        // the squares crossed by the king were checked by the generator
+        if(flag == ChessMove.FLAG_SHORT_CASTLE || flag == ChessMove.FLAG_LONG_CASTLE
+        || move == ChessMove.RESIGNATION) {
+            return true;
+        }
+        updatePins();
+        int king = kingIndex[turn];
+        int origin = ChessMove.originOf(move);
+        long destination = BitBoards.bit(ChessMove.destinationOf(move));
+        if(flag == ChessMove.FLAG_EN_PASSANT) {
+            // two pieces leave the rank of the king, play it on the occupancy
+            long taken = BitBoards.bit(ChessMove.destinationOf(move) + (turn==0? -8 : 8));
+            long occupied = (occupied() ^ BitBoards.bit(origin) ^ taken) | destination;
+            return (attackersTo(king, occupied) & occupancy[1-turn] & ~taken) == 0;
+        }
+        if(origin == king) {
+            // the king is removed so that it does not hide the square behind it
+            long occupied = occupied() ^ BitBoards.bit(king);
+            return (attackersTo(ChessMove.destinationOf(move), occupied) & occupancy[1-turn]) == 0;
+        }
+        if(checkers != 0) {
+            // double check, only the king can move
+            if((checkers & (checkers - 1)) != 0) {
+                return false;
+            }
+            // take the checking piece or block the check
+            int checker = BitBoards.firstSquare(checkers);
+            if(((BitBoards.BETWEEN[king][checker] | checkers) & destination) == 0) {
+                return false;
+            }
+        }
+        return (pinned & BitBoards.bit(origin)) == 0
+            || (BitBoards.LINE[king][origin] & destination) != 0;
     }
 
     public int gameOver() {
         if(computedResult) { return result; }
-        updateLegalMoves();
-        if(legalMoves.isEmpty()) {
+        if(!hasLegalMove()) {
             if(isCheck(turn)) {
                 result = turn == 0 ? -1 : 1;
             }
@@ -506,7 +843,7 @@ public class ChessBoard implements Board {
             // 50 moves without take
             result = 0;
         }
-        else if(isDraw) {
+        else if(isRepetition()) {
             // 3 fold repetition
             result = 0;
         }
@@ -522,360 +859,417 @@ public class ChessBoard implements Board {
                             SIDE FUNCTIONS
 ------------------------------------------------------------------------------*/
     /* -----  Moving pieces  ----- */
-    private void makeMove(ChessMove move) {
-    if(move.isResignation()) {
-        result = turn==0 ? -1 : 1;
-        computedResult = true;
-        return;
-    }
-
-    int moveType = move.moveType();
-    switch(moveType) {
-        case ChessMove.SHORT_CASTLE :
-            pieces[e + turn*56] = UNDEFINED;
-            pieces[f + turn*56] = ROOK + turn*BLACK;
-            pieces[g + turn*56] = KING + turn*BLACK;
-            pieces[h + turn*56] = UNDEFINED;
-            kingIndex[turn] = g + turn*56;
-            break;
-        case ChessMove.LONG_CASTLE :
-            pieces[e + turn*56] = UNDEFINED;
-            pieces[d + turn*56] = ROOK + turn*BLACK;
-            pieces[c + turn*56] = KING + turn*BLACK;
-            pieces[a + turn*56] = UNDEFINED;
-            kingIndex[turn] = c + turn*56;
-            break;
-        case ChessMove.PROMOTION :
-            pieces[move.getOrigin()] = UNDEFINED;
-            pieces[move.getDestination()] = move.getPromoted();
-            break;
-        case ChessMove.EN_PASSANT :
-            pieces[move.getDestination()] = move.getMoving();
-            pieces[move.getOrigin()] = UNDEFINED;
-            int takenIndex = move.getDestination() + (-8 + 16*turn);
-            pieces[takenIndex] = UNDEFINED;
-            break;
-        default :
-            pieces[move.getDestination()] = move.getMoving();
-            pieces[move.getOrigin()] = UNDEFINED;
-            if(move.getMoving()%BLACK == KING) {
-                kingIndex[turn] = move.getDestination();
-            }
-    }
-}
-
-    /* -----  Updating legal moves  ----- */
-    private void updateLegalMoves() {
-        if(computedLegalMoves) { return; }
-        updateControl(1-turn);
-        legalMoves = new Vector<Move>();
-        int piece;
-        for(int i=0; i<nbSquares; i++) {
-            piece = pieces[i];
-            if(piece != UNDEFINED && piece/BLACK == turn) {
-                updateLegalMovesUnique(i);
-            }
+    private void makeMove(int move, int moving) {
+        int origin = ChessMove.originOf(move);
+        int destination = ChessMove.destinationOf(move);
+        switch(ChessMove.flagOf(move)) {
+            case ChessMove.FLAG_SHORT_CASTLE :
+                clearSquare(e + turn*56);
+                putPiece(f + turn*56, ROOK + turn*BLACK);
+                putPiece(g + turn*56, KING + turn*BLACK);
+                clearSquare(h + turn*56);
+                kingIndex[turn] = g + turn*56;
+                break;
+            case ChessMove.FLAG_LONG_CASTLE :
+                clearSquare(e + turn*56);
+                putPiece(d + turn*56, ROOK + turn*BLACK);
+                putPiece(c + turn*56, KING + turn*BLACK);
+                clearSquare(a + turn*56);
+                kingIndex[turn] = c + turn*56;
+                break;
+            case ChessMove.FLAG_EN_PASSANT :
+                putPiece(destination, moving);
+                clearSquare(origin);
+                clearSquare(destination + (-8 + 16*turn));
+                break;
+            default :
+                clearSquare(origin);
+                if(ChessMove.isPromotion(move)) {
+                    putPiece(destination, ChessMove.promotedPiece(move, turn));
+                    break;
+                }
+                putPiece(destination, moving);
+                if(moving%BLACK == KING) {
+                    kingIndex[turn] = destination;
+                }
         }
-        computedLegalMoves = true;
     }
 
-    private void updateLegalMovesUnique(int index) {
-        int piece = pieces[index];
-        switch(piece%BLACK) {
-            case KING :
-                kingMove(index);
-                break;
-            case QUEEN :
-                bishopMove(index);
-                // no break on purpose
-            case ROOK :
-                rookMove(index);
+    private void unmakeMove(int move, int taken) {
+        int origin = ChessMove.originOf(move);
+        int destination = ChessMove.destinationOf(move);
+        int moving = ChessMove.isPromotion(move) ? PAWN + turn*BLACK : pieces[destination];
+        switch(ChessMove.flagOf(move)) {
+            case ChessMove.FLAG_SHORT_CASTLE :
+                clearSquare(g + turn*56);
+                clearSquare(f + turn*56);
+                putPiece(e + turn*56, KING + turn*BLACK);
+                putPiece(h + turn*56, ROOK + turn*BLACK);
+                kingIndex[turn] = e + turn*56;
                 break;
-            case BISHOP :
-                bishopMove(index);
+            case ChessMove.FLAG_LONG_CASTLE :
+                clearSquare(c + turn*56);
+                clearSquare(d + turn*56);
+                putPiece(e + turn*56, KING + turn*BLACK);
+                putPiece(a + turn*56, ROOK + turn*BLACK);
+                kingIndex[turn] = e + turn*56;
                 break;
-            case KNIGHT :
-                knightMove(index);
+            case ChessMove.FLAG_EN_PASSANT :
+                clearSquare(destination);
+                putPiece(origin, moving);
+                putPiece(destination + (-8 + 16*turn), taken);
                 break;
-            case PAWN :
-                pawnMove(index);
-                break;
-            default:
-                System.out.println("Waring (updateLegalMoves) : unrecognized piece (" + (piece%BLACK) + ")");
+            default :
+                clearSquare(destination);
+                putPiece(origin, moving);
+                if(taken != UNDEFINED) {
+                    putPiece(destination, taken);
+                }
+                if(moving%BLACK == KING) {
+                    kingIndex[turn] = origin;
+                }
         }
     }
 
-    private void kingMove(int index) {
-        int rank = getRank(index);
-        int file = getFile(index);
-        // normal move
-        int i = file == a ? 3 : 0;
-        int end = file == h ? 5 : 8;
-        for(; i<end; i++) {
-            int dest = index + kingMove[i];
-            addMove(new ChessMove(this, index, dest), dest);
-        }
-        // short castle
-        if(castlingRights[2*turn]
-        && pieces[index+1] == UNDEFINED
-        && pieces[index+2] == UNDEFINED
-        && control[1-turn][index] == 0 // is check?
-        && control[1-turn][index+1] == 0
-        && control[1-turn][index+2] == 0) {
-            addMove(new ChessMove(this, ChessMove.SHORT_CASTLE), index+2);
+    /* -----  Bitboards  ----- */
+    private void putPiece(int index, int piece) {
+        long occupied = occupied();
+        long square = BitBoards.bit(index);
+        if(pieces[index] != UNDEFINED) {
+            // the square stays occupied : the sliders are not affected
+            removePiece(index, occupied);
         }
-        // long castle
-        if(castlingRights[2*turn+1]
-        && pieces[index-1] == UNDEFINED
-        && pieces[index-2] == UNDEFINED
-        && pieces[index-3] == UNDEFINED
-        && control[1-turn][index] == 0 // is check?
-        && control[1-turn][index-1] == 0
-        && control[1-turn][index-2] == 0) {
-            addMove(new ChessMove(this, ChessMove.LONG_CASTLE), index-2);
+        else {
+            updateSliders(index, occupied, occupied | square);
         }
+        pieces[index] = piece;
+        hash ^= zobristTable[index][piece];
+        bitboards[piece] |= square;
+        occupancy[piece/BLACK] |= square;
+        addControl(piece/BLACK, pieceAttacks(piece, index, occupied | square), 1);
     }
 
-    private void rookMove(int index) {
-        slideMove(index, 0, 1);
-        slideMove(index, 0, -1);
-        slideMove(index, 1, 0);
-        slideMove(index, -1, 0);
+    private void clearSquare(int index) {
+        if(pieces[index] == UNDEFINED) {
+            return;
+        }
+        long occupied = occupied();
+        removePiece(index, occupied);
+        updateSliders(index, occupied, occupied & ~BitBoards.bit(index));
     }
 
-    private void bishopMove(int index) {
-        slideMove(index, 1, 1);
-        slideMove(index, 1, -1);
-        slideMove(index, -1, 1);
-        slideMove(index, -1, -1);
+    private void removePiece(int index, long occupied) {
+        int piece = pieces[index];
+        addControl(piece/BLACK, pieceAttacks(piece, index, occupied), -1);
+        pieces[index] = UNDEFINED;
+        hash ^= zobristTable[index][piece];
+        bitboards[piece] &= ~BitBoards.bit(index);
+        occupancy[piece/BLACK] &= ~BitBoards.bit(index);
     }
 
-    private void knightMove(int index) {
-        int rank = getRank(index);
-        int file = getFile(index);
-        int i = file == a ? 4 : 0;
-        i = file == b ? 2 : i;
-        int end = file == h ? 4 : 8;
-        end = file == g ? 6 : end;
-        for(; i<end; i++) {
-            int dest = index + knightMove[i];
-            addMove(new ChessMove(this, index, dest), dest);
+    /* -----  Updating controls  ----- */
+    // the sliders looking at index see further (or less far) when index is
+    // emptied (or occupied) : only the squares behind index are updated
+    private void updateSliders(int index, long before, long after) {
+        long diagonal = bitboards[BISHOP] | bitboards[BISHOP + BLACK]
+                      | bitboards[QUEEN] | bitboards[QUEEN + BLACK];
+        long straight = bitboards[ROOK] | bitboards[ROOK + BLACK]
+                      | bitboards[QUEEN] | bitboards[QUEEN + BLACK];
+        long sliders = (BitBoards.bishopAttacks(index, before) & diagonal)
+                     | (BitBoards.rookAttacks(index, before) & straight);
+        while(sliders != 0) {
+            int slider = BitBoards.firstSquare(sliders);
+            sliders &= sliders - 1;
+            int piece = pieces[slider];
+            long oldAttacks = pieceAttacks(piece, slider, before);
+            long newAttacks = pieceAttacks(piece, slider, after);
+            addControl(piece/BLACK, newAttacks & ~oldAttacks, 1);
+            addControl(piece/BLACK, oldAttacks & ~newAttacks, -1);
         }
     }
 
-    private void pawnMove(int index) {
-        int rank = getRank(index);
-        int file = getFile(index);
-        int[] moves = pawnMove[turn];
-        int startRank     =  5*turn + 1;
-        int promotionRank = 6 - 5*turn;
-        rank = getRank(index);
-        file = getFile(index);
-
-        int i = file == a ? 1 : 0;
-        int end = file == h ? 2 : 3;
-        for(; i<end; i++) {
-            int dest = index + moves[i];
-            // simple push
-            if(i%2==1 && pieces[dest] == UNDEFINED) {
-                // promotion
-                if(rank == promotionRank) {
-                    promotion(index, dest);
-                    continue;
-                }
-                addMove(new ChessMove(this, index, dest), dest);
-                // double push
-                dest = dest + moves[i];
-                if(rank == startRank && pieces[dest] == UNDEFINED) {
-                    addMove(new ChessMove(this, index, dest), dest);
-                }
-            }
-            else if(i%2==0
-                && (pieces[dest] != UNDEFINED
-                  && pieces[dest]/BLACK != turn)
-                 || dest == enPassantIndex) {
-                // promotion
-                if(rank == promotionRank) {
-                    promotion(index, dest);
-                    continue;
-                }
-                ChessMove newMove = new ChessMove(this, index, dest);
-                if(dest == enPassantIndex) {
-                    newMove.enPassant();
-                }
-                addMove(newMove, dest);
-            }
+    private void addControl(int player, long squares, int count) {
+        int[] playerControl = control[player];
+        while(squares != 0) {
+            playerControl[BitBoards.firstSquare(squares)] += count;
+            squares &= squares - 1;
         }
     }
 
-    private void promotion(int origin, int destination) {
-        ChessMove move;
-        move = new ChessMove(this, origin, destination);
-        move.setPromotion(QUEEN + turn*BLACK);
-        addMove(move, destination);
-        move = new ChessMove(this, origin, destination);
-        move.setPromotion(ROOK + turn*BLACK);
-        addMove(move, destination);
-        move = new ChessMove(this, origin, destination);
-        move.setPromotion(BISHOP + turn*BLACK);
-        addMove(move, destination);
-        move = new ChessMove(this, origin, destination);
-        move.setPromotion(KNIGHT + turn*BLACK);
-        addMove(move, destination);
-    }
-
-    private void slideMove(int currIndex, int fileInc, int rankInc) {
-        int piece = pieces[currIndex];
-        int currFile = getFile(currIndex);
-        int currRank = getRank(currIndex);
-        int file = currFile + fileInc;
-        int rank = currRank + rankInc;
-        while (file < size && file >= 0 && rank < size && rank >= 0) {
-            int destination = square(file, rank);
-            int pieceInDest = pieces[destination];
-
-            // same color piece
-            if(pieceInDest != UNDEFINED
-            && pieceInDest/BLACK == piece/BLACK) {
-                break;
-            }
+    private long occupied() { return occupancy[0] | occupancy[1]; }
 
-            addMove(new ChessMove(this, currIndex, destination), destination);
+    // attacks of the piece located on index given the occupied squares
+    private long pieceAttacks(int piece, int index, long occupied) {
+        switch(piece%BLACK) {
+            case KING   : return BitBoards.KING_ATTACKS[index];
+            case QUEEN  : return BitBoards.queenAttacks(index, occupied);
+            case ROOK   : return BitBoards.rookAttacks(index, occupied);
+            case BISHOP : return BitBoards.bishopAttacks(index, occupied);
+            case KNIGHT : return BitBoards.KNIGHT_ATTACKS[index];
+            case PAWN   : return BitBoards.PAWN_ATTACKS[piece/BLACK][index];
+            default     : return 0;
+        }
+    }
 
-            // capture a piece (the color check is inplicit since the program
-            // would have left the loop otherwise)
-            if(pieceInDest != UNDEFINED) {
-                break;
+    // all the pieces of both players attacking the square index
+    private long attackersTo(int index, long occupied) {
+        return (BitBoards.PAWN_ATTACKS[1][index] & bitboards[PAWN])
+             | (BitBoards.PAWN_ATTACKS[0][index] & bitboards[PAWN + BLACK])
+             | (BitBoards.KNIGHT_ATTACKS[index] & (bitboards[KNIGHT] | bitboards[KNIGHT + BLACK]))
+             | (BitBoards.KING_ATTACKS[index] & (bitboards[KING] | bitboards[KING + BLACK]))
+             | (BitBoards.bishopAttacks(index, occupied)
+                & (bitboards[BISHOP] | bitboards[BISHOP + BLACK]
+                 | bitboards[QUEEN] | bitboards[QUEEN + BLACK]))
+             | (BitBoards.rookAttacks(index, occupied)
+                & (bitboards[ROOK] | bitboards[ROOK + BLACK]
+                 | bitboards[QUEEN] | bitboards[QUEEN + BLACK]));
+    }
+
+    private void updatePins() {
+        if(computedPins) { return; }
+        int king = kingIndex[turn];
+        int offset = (1-turn)*BLACK;
+        long occupied = occupied();
+        checkers = attackersTo(king, occupied) & occupancy[1-turn];
+        pinned = 0;
+        // sliders that would attack the king on an empty board
+        long snipers = (BitBoards.rookAttacks(king, 0)
+                        & (bitboards[ROOK + offset] | bitboards[QUEEN + offset]))
+                     | (BitBoards.bishopAttacks(king, 0)
+                        & (bitboards[BISHOP + offset] | bitboards[QUEEN + offset]));
+        while(snipers != 0) {
+            int sniper = BitBoards.firstSquare(snipers);
+            snipers &= snipers - 1;
+            long between = BitBoards.BETWEEN[king][sniper] & occupied;
+            // exactly one piece in between, and it is ours
+            if(between != 0 && (between & (between - 1)) == 0
+            && (between & occupancy[turn]) != 0) {
+                pinned |= between;
             }
-            file = file + fileInc;
-            rank = rank + rankInc;
         }
+        computedPins = true;
+    }
+
+    /* -----  Updating legal moves  ----- */
+    private boolean hasLegalMove() {
+        updateLegalMoves();
+        return !legalMoves.isEmpty();
     }
 
-    private void addMove(ChessMove move, int destination) {
-        if(destination < 0
-           || destination >= nbSquares
-           || (pieces[destination]/BLACK == move.getMoving()/BLACK
-           && pieces[destination] != UNDEFINED)) {
+    // the legal moves are generated directly : the king only goes to squares
+    // that are not attacked, the other pieces only go to the squares that
+    // answer a check and pinned pieces stay on the line of their king
+    private void updateLegalMoves() {
+        if(computedLegalMoves) { return; }
+        updatePins();
+        legalMoves.clear();
+        int king = kingIndex[turn];
+        legalKingMoves(king);
+        // in double check, only the king can move
+        if(checkers != 0 && (checkers & (checkers - 1)) != 0) {
+            computedLegalMoves = true;
             return;
         }
-        move(move, false);
-        updateControl(turn);
-        if(!isCheck(1 - turn)) {
-            legalMoves.add(move);
+        // take the checking piece or block the check
+        long evasions = -1L;
+        if(checkers != 0) {
+            evasions = BitBoards.BETWEEN[king][BitBoards.firstSquare(checkers)] | checkers;
+        }
+        long own = occupancy[turn] & ~BitBoards.bit(king);
+        while(own != 0) {
+            int index = BitBoards.firstSquare(own);
+            own &= own - 1;
+            long mask = evasions;
+            if((pinned & BitBoards.bit(index)) != 0) {
+                mask &= BitBoards.LINE[king][index];
+            }
+            pieceMoves(index, legalMoves, ALL_MOVES | LEGAL_ONLY, mask);
         }
-        undo();
+        computedLegalMoves = true;
     }
 
-    /* -----  Updating controls  ----- */
-    public void updateControl(int player) {
-        if((player==0 && computedControlW)
-        || (player==1 && computedControlB)
-        || (player==2 && computedControlW && computedControlB)) {
-            return;
-        }
-        control = new int[2][nbSquares];
-        int piece;
-        for(int i=0; i<nbSquares; i++) {
-            piece = pieces[i];
-            if(piece != UNDEFINED
-            && (piece/BLACK == player
-            || player == 2)) {
-                updateControlUnique(piece/BLACK, i);
+    private void legalKingMoves(int king) {
+        // the king is removed so that it does not hide the squares behind it
+        long occupied = occupied() ^ BitBoards.bit(king);
+        long targets = BitBoards.KING_ATTACKS[king] & ~occupancy[turn];
+        long safe = 0;
+        while(targets != 0) {
+            int destination = BitBoards.firstSquare(targets);
+            targets &= targets - 1;
+            if(control[1-turn][destination] == 0
+            && (attackersTo(destination, occupied) & occupancy[1-turn]) == 0) {
+                safe |= BitBoards.bit(destination);
             }
         }
-        if(player == 0 || player == 2 ) {
-            computedControlW = true;
+        addMoves(king, safe, legalMoves, ALL_MOVES);
+        if(checkers == 0) {
+            castlings(king, legalMoves);
         }
-        if(player == 0 || player == 2 ) {
-            computedControlB = true;
+    }
+
+    // moves following the rules of each piece, that may leave the king in check
+    private void updatePseudoLegalMoves() {
+        if(computedPseudoLegalMoves) { return; }
+        generateMoves(pseudoLegalMoves, ALL_MOVES);
+        computedPseudoLegalMoves = true;
+    }
+
+    private void generateMoves(MoveList moves, int kinds) {
+        moves.clear();
+        long own = occupancy[turn];
+        while(own != 0) {
+            pieceMoves(BitBoards.firstSquare(own), moves, kinds, -1L);
+            own &= own - 1;
         }
     }
 
-    private void updateControlUnique(int player, int index) {
+    // moves of the piece on index, to the squares of mask only
+    private void pieceMoves(int index, MoveList moves, int kinds, long mask) {
         int piece = pieces[index];
-        int rank = getRank(index);
-        int file = getFile(index);
-        int i, end;
         switch(piece%BLACK) {
             case KING :
-                // normal move
-                i = file == a ? 3 : 0;
-                end = file == h ? 5 : 8;
-                for(; i<end; i++) {
-                    addControl(player, index + kingMove[i]);
-                }
+                kingMove(index, moves, kinds);
                 break;
             case QUEEN :
-                // diagonal slide
-                slideControl(player, index, 1, 1);
-                slideControl(player, index, 1, -1);
-                slideControl(player, index, -1, 1);
-                slideControl(player, index, -1, -1);
-                // no break on purpose
+                addMoves(index, BitBoards.queenAttacks(index, occupied()) & mask, moves, kinds);
+                break;
             case ROOK :
-                // horizontal slide
-                slideControl(player, index, 0, 1);
-                slideControl(player, index, 0, -1);
-                // vertical slide
-                slideControl(player, index, 1, 0);
-                slideControl(player, index, -1, 0);
+                addMoves(index, BitBoards.rookAttacks(index, occupied()) & mask, moves, kinds);
                 break;
             case BISHOP :
-                // diagonal slide
-                slideControl(player, index, 1, 1);
-                slideControl(player, index, 1, -1);
-                slideControl(player, index, -1, 1);
-                slideControl(player, index, -1, -1);
+                addMoves(index, BitBoards.bishopAttacks(index, occupied()) & mask, moves, kinds);
                 break;
             case KNIGHT :
-                i = file == a ? 4 : 0;
-                i = file == b ? 2 : i;
-                end = file == h ? 4 : 8;
-                end = file == g ? 6 : end;
-                for(; i<end; i++) {
-                    addControl(player, index + knightMove[i]);
-                }
+                addMoves(index, BitBoards.KNIGHT_ATTACKS[index] & mask, moves, kinds);
                 break;
             case PAWN :
-                if(file != a) {
-                    addControl(player, index + pawnMove[player][0]);
-                }
-                if(file != h) {
-                    addControl(player, index + pawnMove[player][2]);
-                }
+                pawnMove(index, moves, kinds, mask);
                 break;
             default:
-                System.out.println("Waring (updateControl) : unrecognized piece (" + (piece%BLACK) + ")");
+                System.out.println("Waring (updateLegalMoves) : unrecognized piece (" + (piece%BLACK) + ")");
         }
     }
 
-    private void slideControl(int player, int index, int fileInc, int rankInc) {
-        int currFile = getFile(index);
-        int currRank = getRank(index);
-        int file = currFile + fileInc;
-        int rank = currRank + rankInc;
-        while (file < size && file >= 0 && rank < size && rank >= 0) {
-            int destination = square(file, rank);
-            int pieceInDest = pieces[destination];
-            addControl(player, destination);
-            // non empty
-            if(pieceInDest != UNDEFINED) {
-                break;
+    private void kingMove(int index, MoveList moves, int kinds) {
+        // normal move
+        addMoves(index, BitBoards.KING_ATTACKS[index], moves, kinds);
+        if((kinds & QUIET_MOVES) != 0) {
+            castlings(index, moves);
+        }
+    }
+
+    private void castlings(int index, MoveList moves) {
+        // short castle
+        if((castlingRights & (1 << 2*turn)) != 0
+        && pieces[index+1] == UNDEFINED
+        && pieces[index+2] == UNDEFINED
+        && !isSquareAttacked(index, 1-turn) // is check?
+        && !isSquareAttacked(index+1, 1-turn)
+        && !isSquareAttacked(index+2, 1-turn)) {
+            moves.add(ChessMove.encode(index, index+2, ChessMove.FLAG_SHORT_CASTLE));
+        }
+        // long castle
+        if((castlingRights & (1 << 2*turn+1)) != 0
+        && pieces[index-1] == UNDEFINED
+        && pieces[index-2] == UNDEFINED
+        && pieces[index-3] == UNDEFINED
+        && !isSquareAttacked(index, 1-turn) // is check?
+        && !isSquareAttacked(index-1, 1-turn)
+        && !isSquareAttacked(index-2, 1-turn)) {
+            moves.add(ChessMove.encode(index, index-2, ChessMove.FLAG_LONG_CASTLE));
+        }
+    }
+
+    private void pawnMove(int index, MoveList moves, int kinds, long mask) {
+        int rank = getRank(index);
+        int push = pawnMove[turn][1];
+        int startRank     =  5*turn + 1;
+        int promotionRank = 6 - 5*turn;
+        boolean threats = (kinds & THREATS) != 0;
+        boolean quiets = (kinds & QUIET_MOVES) != 0;
+
+        // simple push
+        int dest = index + push;
+        if(pieces[dest] == UNDEFINED) {
+            boolean inMask = (mask & BitBoards.bit(dest)) != 0;
+            // promotion
+            if(rank == promotionRank) {
+                if(threats && inMask) {
+                    promotion(index, dest, ChessMove.FLAG_PROMOTION, moves);
+                }
+            }
+            else if(quiets) {
+                if(inMask) {
+                    moves.add(ChessMove.encode(index, dest, ChessMove.FLAG_QUIET));
+                }
+                // double push
+                dest = dest + push;
+                if(rank == startRank && pieces[dest] == UNDEFINED
+                && (mask & BitBoards.bit(dest)) != 0) {
+                    moves.add(ChessMove.encode(index, dest, ChessMove.FLAG_DOUBLE_PUSH));
+                }
+            }
+        }
+        if(!threats) {
+            return;
+        }
+        // captures
+        long targets = occupancy[1-turn] & BitBoards.PAWN_ATTACKS[turn][index] & mask;
+        while(targets != 0) {
+            dest = BitBoards.firstSquare(targets);
+            targets &= targets - 1;
+            // promotion
+            if(rank == promotionRank) {
+                promotion(index, dest, ChessMove.FLAG_PROMOTION | ChessMove.FLAG_CAPTURE, moves);
+                continue;
+            }
+            moves.add(ChessMove.encode(index, dest, ChessMove.FLAG_CAPTURE));
+        }
+        if(enPassantIndex != -1
+        && (BitBoards.PAWN_ATTACKS[turn][index] & BitBoards.bit(enPassantIndex)) != 0) {
+            int move = ChessMove.encode(index, enPassantIndex, ChessMove.FLAG_EN_PASSANT);
+            // the taken pawn is not on the destination square and 2 pawns leave
+            // the rank of the king : the (rare) en passant captures are
+            // checked one by one
+            if((kinds & LEGAL_ONLY) == 0 || isLegal(move)) {
+                moves.add(move);
             }
-            file = file + fileInc;
-            rank = rank + rankInc;
         }
     }
 
-    private void addControl(int player, int index) {
-        if(index >= 0 && index < nbSquares) {
-            control[player][index]++;
+    private void promotion(int origin, int destination, int flag, MoveList moves) {
+        moves.add(ChessMove.encode(origin, destination, flag + QUEEN - KNIGHT));
+        moves.add(ChessMove.encode(origin, destination, flag + ROOK - KNIGHT));
+        moves.add(ChessMove.encode(origin, destination, flag + BISHOP - KNIGHT));
+        moves.add(ChessMove.encode(origin, destination, flag));
+    }
+
+    // adds a move from origin to every square of targets not occupied by the
+    // player to move
+    private void addMoves(int origin, long targets, MoveList moves, int kinds) {
+        long captures = (kinds & THREATS) != 0 ? targets & occupancy[1-turn] : 0;
+        long quiets = (kinds & QUIET_MOVES) != 0 ? targets & ~occupied() : 0;
+        while(captures != 0) {
+            int destination = BitBoards.firstSquare(captures);
+            captures &= captures - 1;
+            moves.add(ChessMove.encode(origin, destination, ChessMove.FLAG_CAPTURE));
+        }
+        while(quiets != 0) {
+            int destination = BitBoards.firstSquare(quiets);
+            quiets &= quiets - 1;
+            moves.add(ChessMove.encode(origin, destination, ChessMove.FLAG_QUIET));
         }
     }
 
     private void reset() {
         for(int i=0; i<nbSquares; i++) { pieces[i] = UNDEFINED; }
+        for(int i=0; i<bitboards.length; i++) { bitboards[i] = 0; }
+        occupancy[0] = 0;
+        occupancy[1] = 0;
+        for(int i=0; i<nbSquares; i++) {
+            control[0][i] = 0;
+            control[1][i] = 0;
+        }
     }
 
     private void boardInit(String boardID) {
@@ -898,7 +1292,7 @@ public class ChessBoard implements Board {
                 // white pieces are uppercase letters
                 if (currChar < 'Z' && currChar > 'A') {
                     int pieceValue = pieceValue(currChar);
-                    pieces[index] = pieceValue + color * BLACK;
+                    putPiece(index, pieceValue + color * BLACK);
                     if(pieceValue%BLACK == KING) {
                         kingIndex[color] = index;
                     }
@@ -961,73 +1355,64 @@ public class ChessBoard implements Board {
 
     /* -----  Updating castling rights  ----- */
     private void setCastlingRights(String s) {
-        castlingRights = new boolean[4];
-        for(int i=0; i<4; i++) {
-            castlingRights[i] = false;
-        }
+        castlingRights = 0;
         int charIndex = 0;
-        castlingRights = new boolean[4];
         if(s.charAt(charIndex) == '-') { return; }
         if(s.charAt(charIndex) == 'K') {
-            castlingRights[0] = true;
+            castlingRights |= 1;
             charIndex++;
         }
         if(s.charAt(charIndex) == 'Q') {
-            castlingRights[1] = true;
+            castlingRights |= 2;
             charIndex++;
         }
         if(s.charAt(charIndex) == 'k') {
-            castlingRights[2] = true;
+            castlingRights |= 4;
             charIndex++;
         }
         if(s.charAt(charIndex) == 'q') {
-            castlingRights[3] = true;
+            castlingRights |= 8;
             charIndex++;
         }
     }
 
     private void updateCastlingRights() {
-        boolean[] oldCastlingRight = castlingRights;
-        castlingRights = new boolean[4];
         // white short castle
-        castlingRights[0] = oldCastlingRight[0]
-                            && pieces[e] == KING
-                            && pieces[h] == ROOK;
+        if(pieces[e] != KING || pieces[h] != ROOK) {
+            castlingRights &= ~1;
+        }
         // white long castle
-        castlingRights[1] = oldCastlingRight[1]
-                            && pieces[e] == KING
-                            && pieces[a] == ROOK;
+        if(pieces[e] != KING || pieces[a] != ROOK) {
+            castlingRights &= ~2;
+        }
         // black short castle
-        castlingRights[2] = oldCastlingRight[2]
-                            && pieces[e+56] == KING + BLACK
-                            && pieces[h+56] == ROOK + BLACK;
+        if(pieces[e+56] != KING + BLACK || pieces[h+56] != ROOK + BLACK) {
+            castlingRights &= ~4;
+        }
         // black long castle
-        castlingRights[3] = oldCastlingRight[3]
-                            && pieces[e+56] == KING + BLACK
-                            && pieces[a+56] == ROOK + BLACK;
+        if(pieces[e+56] != KING + BLACK || pieces[a+56] != ROOK + BLACK) {
+            castlingRights &= ~8;
+        }
     }
 
     /* -----  Looking for checks  ----- */
     private boolean isCheck(int player) {
-        if(control[1-player][kingIndex[player]] > 0) {
-            return true;
-        }
-        return false;
+        return isSquareAttacked(kingIndex[player], 1-player);
     }
 
-    /* -----  Updating the Hashmap  ----- */
-    private void incrementInHashMap() {
-        Long id = toHash();
-        Integer value = playedPositions.get(id);
-        if(value == null) {
-            playedPositions.put(id, Integer.valueOf(1));
-            return;
-        }
-        int nbOccurences = (int) value;
-        if(nbOccurences >= 2) {
-            isDraw = true;
+    /* -----  Looking for repetitions  ----- */
+    // the hashes of the previous positions are in hashStack. Only the
+    // positions since the last take or pawn move, with the same player to
+    // move, can be identical to the current one
+    private boolean isRepetition() {
+        int first = Math.max(nbPlayed - nbMovesNoTake, 0);
+        int nbOccurences = 0;
+        for(int i=nbPlayed-2; i>=first; i-=2) {
+            if(hashStack[i] == hash && ++nbOccurences >= 2) {
+                return true;
+            }
         }
-        playedPositions.replace(id, Integer.valueOf(nbOccurences+1));
+        return false;
     }
 
 /*------------------------------------------------------------------------------
@@ -1042,8 +1427,8 @@ public class ChessBoard implements Board {
 
     public double[] getCastlingRights(){
         double[] toReturn = new double[4];
-        for(int i = 0; i < castlingRights.length; i++){
-            toReturn[i] = castlingRights[i] ? 1 : -1;
+        for(int i = 0; i < 4; i++){
+            toReturn[i] = (castlingRights & (1 << i)) != 0 ? 1 : -1;
         }
         return toReturn;
     }
@@ -1060,6 +1445,10 @@ public class ChessBoard implements Board {
         return control[player];
     }
 
+    public boolean isSquareAttacked(int index, int player) {
+        return control[player][index] != 0;
+    }
+
 /*------------------------------------------------------------------------------
                                 FORMAT
 ------------------------------------------------------------------------------*/
@@ -1073,34 +1462,42 @@ public class ChessBoard implements Board {
     public static int getRank(int index) { return index/size; }
     public static int getFile(int index) { return index%size; }
 
-    private void zobristInit() {
-        Random r = new Random();
-        zobristTable = new long[nbSquares][14];
-        for(int i=0; i<nbSquares; i++) {
-            for(int j=0; j<14; j++) {
-                zobristTable[i][j] = r.nextLong();
-            }
+    // the en passant square is only part of the position if a pawn can take
+    private long enPassantKey() {
+        if(enPassantIndex == -1
+        || (BitBoards.PAWN_ATTACKS[1-turn][enPassantIndex] & bitboards[PAWN + turn*BLACK]) == 0) {
+            return 0;
         }
+        return zobristEnPassant[getFile(enPassantIndex)];
     }
 
-    public Long toHash() {
-        long h = 0;
+    // computes the hash from scratch, the board otherwise updates it on each move
+    private long computeHash() {
+        long h = turn == 1 ? zobristBlackToMove : 0;
         for(int i=0; i<nbSquares; i++) {
-            int j = pieces[i];
-            h = h ^ zobristTable[i][j];
+            if(pieces[i] != UNDEFINED) {
+                h ^= zobristTable[i][pieces[i]];
+            }
         }
-        return Long.valueOf(h);
+        return h ^ enPassantKey() ^ zobristCastling[castlingRights];
     }
 
+    public long getHash() { return hash; }
+
+    public Long toHash() { return Long.valueOf(hash); }
+
     public String gameToPGN() {
         String s = "";
         int move = 0;
-        for(BoardState state : new Vector<BoardState>(stateStack)) {
+        // the moves are replayed since the stack only keeps the packed moves
+        ChessBoard replay = new ChessBoard(startingPosition, players[0], players[1]);
+        for(int i=0; i<nbPlayed; i++) {
             if(move%2 == 0) {
                 s += Integer.toString(move/2 + 1) + ". ";
             }
             move++;
-            s += state.lastMove + " ";
+            s += replay.toMove(playedMoves[i]) + " ";
+            replay.move(playedMoves[i]);
         }
         return s;
     }
@@ -1193,10 +1590,10 @@ public class ChessBoard implements Board {
         s += (turn==0)? " w " : " b ";
 
         // castling rights
-        s += castlingRights[0] ? "K" : "";
-        s += castlingRights[1] ? "Q" : "";
-        s += castlingRights[2] ? "k" : "";
-        s += castlingRights[3] ? "q" : "";
+        s += (castlingRights & 1) != 0 ? "K" : "";
+        s += (castlingRights & 2) != 0 ? "Q" : "";
+        s += (castlingRights & 4) != 0 ? "k" : "";
+        s += (castlingRights & 8) != 0 ? "q" : "";
 
         s += enPassantIndex != -1 ?
              " " + squareToString(enPassantIndex) + " " :
@@ -1228,52 +1625,3 @@ public class ChessBoard implements Board {
 		return players[number];
 	}
 }
-
-/*******************************************************************************
-                                 BOARD STATE
-*******************************************************************************/
-class BoardState {
-    protected final int enPassantIndex;
-    protected final int[] pieces;
-    protected final int[] kingIndex;
-    protected final int[][] control;
-    protected final Vector<Move> legalMoves;
-    protected final boolean[] castlingRights;
-    protected final int nbMovesNoTake;
-    protected final Move lastMove;
-    private final HashMap<Long, Integer> playedPositions;
-    protected final boolean computedControlW;
-    protected final boolean computedControlB;
-
-    BoardState(ChessBoard board) {
-        this.enPassantIndex = board.enPassantIndex;
-        this.pieces = new int[64];
-        for(int i=0; i<64; i++) this.pieces[i] = board.pieces[i];
-        this.kingIndex = new int[2];
-        this.kingIndex[0] = board.kingIndex[0];
-        this.kingIndex[1] = board.kingIndex[1];
-        this.control = board.control;
-        this.legalMoves = board.legalMoves;
-        this.castlingRights = board.castlingRights;
-        this.nbMovesNoTake = board.nbMovesNoTake;
-        this.lastMove = board.lastMove;
-        this.playedPositions = new HashMap<Long, Integer>(board.playedPositions);
-        this.computedControlW = board.computedControlW;
-        this.computedControlB = board.computedControlB;
-    }
-
-    void recoverBoardState(ChessBoard board) {
-        board.enPassantIndex = this.enPassantIndex;
-        board.pieces = this.pieces;
-        board.kingIndex[0] = this.kingIndex[0];
-        board.kingIndex[1] = this.kingIndex[1];
-        board.control = this.control;
-        board.legalMoves = this.legalMoves;
-        board.castlingRights = this.castlingRights;
-        board.nbMovesNoTake = this.nbMovesNoTake;
-        board.lastMove = lastMove;
-        board.playedPositions = this.playedPositions;
-        board.computedControlW = this.computedControlW;
-        board.computedControlB = this.computedControlB;
-    }
-}
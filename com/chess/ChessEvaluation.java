@@ -8,6 +8,10 @@ public class ChessEvaluation implements Evaluation {
 
     }
 
+    public double getUnit() { return 1; }
+
+    public double getWinScore() { return 1000; }
+
 	public double evaluate(Board brd) {
         ChessBoard board = (ChessBoard) brd;
         int result = board.gameOver();
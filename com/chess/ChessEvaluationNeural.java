@@ -65,6 +65,11 @@ public class ChessEvaluationNeural implements NeuralEvaluation {
 		return nn.propagate(new Matrix(input)).getContent()[0][0];
 	}
 
+    // the output of the network is in [0, 1], a pawn is worth a small part of it
+    public double getUnit() { return 0.05; }
+
+    public double getWinScore() { return 100; }
+
     public static int getNbInputs() { return nbInputs; }
 
     public NeuralNetwork getNeuralNet() { return nn; }
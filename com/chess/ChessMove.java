@@ -9,6 +9,10 @@ public class ChessMove implements Move {
     private int moveType = SIMPLE_MOVE;
 
     private boolean resign = false;
+    // the ordering score is computed once, compareTo() is called many times
+    // on the same move by a sort
+    private int imbalance;
+    private boolean computedImbalance = false;
 
     public static final int SIMPLE_MOVE = 0;
     public static final int PROMOTION = 1;
@@ -16,6 +20,68 @@ public class ChessMove implements Move {
     public static final int LONG_CASTLE = 3;
     public static final int EN_PASSANT = 4;
 
+    /*
+    Packed representation of a move, used by ChessBoard to generate and play
+    moves without creating objects :
+        bits 0-5   : origin
+        bits 6-11  : destination
+        bits 12-15 : flag
+    The promotion flags are FLAG_PROMOTION + (promoted piece - KNIGHT), plus
+    FLAG_CAPTURE if the pawn takes a piece. Every capture has the FLAG_CAPTURE
+    bit set.
+    */
+    public static final int FLAG_QUIET = 0;
+    public static final int FLAG_DOUBLE_PUSH = 1;
+    public static final int FLAG_SHORT_CASTLE = 2;
+    public static final int FLAG_LONG_CASTLE = 3;
+    public static final int FLAG_CAPTURE = 4;
+    public static final int FLAG_EN_PASSANT = 5;
+    public static final int FLAG_PROMOTION = 8;
+
+    // not a real move : origin and destination are the same square
+    public static final int RESIGNATION = encode(63, 63, 15);
+    // the player to move passes (null move of the searches), a1a1
+    public static final int NULL_MOVE = 0;
+
+    public static int encode(int origin, int destination, int flag) {
+        return origin | (destination << 6) | (flag << 12);
+    }
+
+    public static int originOf(int move) { return move & 0x3F; }
+    public static int destinationOf(int move) { return (move >>> 6) & 0x3F; }
+    public static int flagOf(int move) { return move >>> 12; }
+
+    public static boolean isCapture(int move) {
+        return (flagOf(move) & FLAG_CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flagOf(move) & FLAG_PROMOTION) != 0;
+    }
+
+    public static int promotedPiece(int move, int turn) {
+        return ChessBoard.KNIGHT + (flagOf(move) & 3) + turn*ChessBoard.BLACK;
+    }
+
+    // creates the move object of a packed move of the current position of board
+    public static ChessMove decode(ChessBoard board, int code) {
+        if(code == RESIGNATION) {
+            return new ChessMove(board, -1, -1);
+        }
+        int flag = flagOf(code);
+        if(flag == FLAG_SHORT_CASTLE) {
+            return new ChessMove(board, SHORT_CASTLE);
+        }
+        if(flag == FLAG_LONG_CASTLE) {
+            return new ChessMove(board, LONG_CASTLE);
+        }
+        ChessMove move = new ChessMove(board, originOf(code), destinationOf(code));
+        if(isPromotion(code)) {
+            move.setPromotion(promotedPiece(code, board.getTurn()));
+        }
+        return move;
+    }
+
 
     public ChessMove(ChessBoard board, int origin, int dest) {
         if(origin < 0 || dest < 0) {
@@ -99,6 +165,32 @@ public class ChessMove implements Move {
         taken = board.getPiece(destination + (turn==0? -8:8));
     }
 
+    public int encode() {
+        if(resign) {
+            return RESIGNATION;
+        }
+        switch(moveType) {
+            case SHORT_CASTLE :
+                return encode(origin, origin + 2, FLAG_SHORT_CASTLE);
+            case LONG_CASTLE :
+                return encode(origin, origin - 2, FLAG_LONG_CASTLE);
+            case EN_PASSANT :
+                return encode(origin, destination, FLAG_EN_PASSANT);
+            case PROMOTION :
+                int flag = FLAG_PROMOTION + promoted%ChessBoard.BLACK - ChessBoard.KNIGHT;
+                if(taken != ChessBoard.UNDEFINED) {
+                    flag |= FLAG_CAPTURE;
+                }
+                return encode(origin, destination, flag);
+            default :
+                if(isPawnPush2()) {
+                    return encode(origin, destination, FLAG_DOUBLE_PUSH);
+                }
+                return encode(origin, destination,
+                              taken != ChessBoard.UNDEFINED ? FLAG_CAPTURE : FLAG_QUIET);
+        }
+    }
+
     public boolean isPawnPush2() {
         return moving%ChessBoard.BLACK == ChessBoard.PAWN      // is a pawn
                && abs(destination-origin) == 16;     // pushed 2 squares
@@ -154,14 +246,14 @@ public class ChessMove implements Move {
         return clone;
     }
 
+    // material won by the move once the exchanges on its destination are
+    // over (see ChessBoard.see()), in the position the move was created from
     public int moveImbalance() {
-        int toReturn = ChessBoard.pieceWorth(taken) + ChessBoard.pieceWorth(promoted);
-        int[] oponentControl = board.getControl((moving/ChessBoard.BLACK+1)%2);
-        int[] myControl = board.getControl(moving/ChessBoard.BLACK);
-        if(toReturn != 0 && oponentControl[destination] > myControl[destination]) {
-            toReturn -= ChessBoard.pieceWorth(moving);
+        if(!computedImbalance) {
+            imbalance = resign ? 0 : board.see(encode());
+            computedImbalance = true;
         }
-        return toReturn;
+        return imbalance;
     }
 
     private int abs(int a) { return a<0? -a : a; }
@@ -0,0 +1,351 @@
+/*
+command to run this main() :
+    java --class-path bin  com.chess.Perft <depth> [options]
+    options :
+        -fen "<fen>"    position to count from (starting position by default)
+        -epd <file>     checks every position of an EPD file whose lines look
+                        like "<fen> ;D1 20 ;D2 400 ..." up to depth
+        -divide         prints the number of nodes below each move of the root
+        -hash <MB>      size of the perft hash table (0 to disable it)
+        -threads <n>    number of threads counting in parallel (1 by default)
+        -split <d>      number of plies split in parallel tasks (2 by default)
+*/
+
+package com.chess;
+
+import com.gameEngine.MoveList;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Perft {
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // the hash of the position is combined with one key per depth so that the
+    // counts of a position at different depths do not collide
+    private static final long[] depthKeys = new long[64];
+    static {
+        Random random = new Random(0xBEEF);
+        for(int i=0; i<depthKeys.length; i++) {
+            depthKeys[i] = random.nextLong();
+        }
+    }
+
+    private ChessBoard board;
+    private MoveList[] moveLists;
+    // the hash table is made of 2 parallel arrays, a slot is always replaced.
+    // It is shared by the threads of parallelPerft() : the key is stored xored
+    // with the count so that a slot written by 2 threads at once is rejected
+    private long[] keys;
+    private long[] counts;
+    private int mask;
+    // leaves counted by each thread during the last parallelPerft()
+    private Map<String, LongAdder> nodesPerThread;
+
+    public Perft(ChessBoard board, int hashSizeMB) {
+        this.board = board;
+        moveLists = new MoveList[depthKeys.length];
+        for(int i=0; i<moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        if(hashSizeMB > 0) {
+            // 16 bytes per entry, rounded down to a power of 2
+            int nbEntries = Integer.highestOneBit((int) Math.min(
+                            (long) hashSizeMB * 1024 * 1024 / 16, 1 << 30));
+            keys = new long[nbEntries];
+            counts = new long[nbEntries];
+            mask = nbEntries - 1;
+        }
+    }
+
+    public Perft(ChessBoard board) {
+        this(board, 0);
+    }
+
+    // perft of a task of parallelPerft(), sharing the hash table of parent
+    private Perft(ChessBoard board, Perft parent) {
+        this(board, 0);
+        keys = parent.keys;
+        counts = parent.counts;
+        mask = parent.mask;
+        nodesPerThread = parent.nodesPerThread;
+    }
+
+    /*
+    Returns the number of leaves of the legal move tree of the given depth
+    */
+    public long perft(int depth) {
+        if(depth < 1) {
+            return 1;
+        }
+        if(depth >= depthKeys.length) {
+            throw new IllegalArgumentException("Error in Perft.perft : The depth "
+            + depth + " is too large");
+        }
+        return count(depth);
+    }
+
+    /*
+    Same as perft() but prints the number of leaves below each root move
+    */
+    public long divide(int depth) {
+        if(depth < 1) {
+            return 1;
+        }
+        MoveList moves = new MoveList();
+        board.getLegalMoves(moves);
+        long total = 0;
+        for(int i=0; i<moves.size(); i++) {
+            int move = moves.get(i);
+            String name = moveName(move);
+            board.move(move);
+            long nodes = perft(depth-1);
+            board.undo();
+            System.out.println(name + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println("\nMoves : " + moves.size());
+        System.out.println("Nodes : " + total);
+        return total;
+    }
+
+    /*
+    Same as perft() but the first splitDepth plies are split in fork/join
+    tasks, each of them working on its own copy of the board. The leaves
+    counted by each thread can be read with getNodesPerThread()
+    */
+    public long parallelPerft(int depth, int nbThreads, int splitDepth) {
+        if(depth >= depthKeys.length) {
+            throw new IllegalArgumentException("Error in Perft.parallelPerft : The depth "
+            + depth + " is too large");
+        }
+        nodesPerThread = new ConcurrentHashMap<String, LongAdder>();
+        ForkJoinPool pool = new ForkJoinPool(nbThreads);
+        try {
+            return pool.invoke(new PerftTask(board.clone(), depth, splitDepth));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    public Map<String, Long> getNodesPerThread() {
+        Map<String, Long> toReturn = new TreeMap<String, Long>();
+        if(nodesPerThread != null) {
+            for(Map.Entry<String, LongAdder> entry : nodesPerThread.entrySet()) {
+                toReturn.put(entry.getKey(), entry.getValue().sum());
+            }
+        }
+        return toReturn;
+    }
+
+    private class PerftTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private ChessBoard position;
+        private int depth;
+        private int splitDepth;
+
+        PerftTask(ChessBoard position, int depth, int splitDepth) {
+            this.position = position;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        protected Long compute() {
+            if(splitDepth <= 0 || depth <= 1) {
+                long nodes = new Perft(position, Perft.this).perft(depth);
+                nodesPerThread.computeIfAbsent(Thread.currentThread().getName(),
+                                               k -> new LongAdder()).add(nodes);
+                return nodes;
+            }
+            MoveList moves = new MoveList();
+            position.getLegalMoves(moves);
+            PerftTask[] tasks = new PerftTask[moves.size()];
+            for(int i=0; i<moves.size(); i++) {
+                ChessBoard child = position.clone();
+                child.move(moves.get(i));
+                tasks[i] = new PerftTask(child, depth-1, splitDepth-1);
+            }
+            invokeAll(tasks);
+            long nodes = 0;
+            for(PerftTask task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    private long count(int depth) {
+        MoveList moves = moveLists[depth];
+        // bulk counting : the leaves are the legal moves, none are played
+        if(depth == 1) {
+            board.getLegalMoves(moves);
+            return moves.size();
+        }
+        int slot = 0;
+        long key = 0;
+        if(keys != null) {
+            key = board.getHash() ^ depthKeys[depth];
+            slot = (int) key & mask;
+            long cached = counts[slot];
+            if((keys[slot] ^ cached) == key) {
+                return cached;
+            }
+        }
+        board.getPseudoLegalMoves(moves);
+        long nodes = 0;
+        for(int i=0; i<moves.size(); i++) {
+            int move = moves.get(i);
+            if(!board.isLegal(move)) {
+                continue;
+            }
+            board.move(move);
+            nodes += count(depth-1);
+            board.undo();
+        }
+        if(keys != null) {
+            counts[slot] = nodes;
+            keys[slot] = key ^ nodes;
+        }
+        return nodes;
+    }
+
+    // long algebraic notation, as used by most engines to print divide
+    public static String moveName(int move) {
+        String s = ChessBoard.squareToString(ChessMove.originOf(move))
+                 + ChessBoard.squareToString(ChessMove.destinationOf(move));
+        if(ChessMove.isPromotion(move)) {
+            s += Character.toLowerCase(ChessBoard.pieceName(ChessMove.promotedPiece(move, 0)));
+        }
+        return s;
+    }
+
+    /*
+    Reads a FEN code, the move counters may be omitted as in EPD records
+    */
+    public static ChessBoard readPosition(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String toRead = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3];
+        toRead += fields.length >= 6 ? " " + fields[4] + " " + fields[5] : " 0 1";
+        return new ChessBoard(toRead, null, null);
+    }
+
+    /*
+    Checks every position of an EPD file up to maxDepth, returns true if all
+    the counts are correct
+    */
+    public static boolean checkEPD(String fileName, int maxDepth, int hashSizeMB,
+                                   int nbThreads) throws IOException {
+        boolean correct = true;
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] parts = line.split(";");
+                if(parts[0].trim().isEmpty()) {
+                    continue;
+                }
+                System.out.println(parts[0].trim());
+                for(int i=1; i<parts.length; i++) {
+                    String[] expected = parts[i].trim().split("\\s+");
+                    int depth = Integer.parseInt(expected[0].substring(1));
+                    if(depth > maxDepth) {
+                        continue;
+                    }
+                    Perft perft = new Perft(readPosition(parts[0]), hashSizeMB);
+                    long nodes = nbThreads > 1 ?
+                                 perft.parallelPerft(depth, nbThreads, 2) :
+                                 perft.perft(depth);
+                    boolean ok = nodes == Long.parseLong(expected[1]);
+                    System.out.println("    depth " + depth + " : " + nodes
+                    + (ok ? "" : "  /!\\ expected " + expected[1]));
+                    correct = correct && ok;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return correct;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0) {
+            System.out.println("Wrong number of arguments");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        String fen = START;
+        String epd = null;
+        boolean divide = false;
+        int hashSizeMB = 0;
+        int nbThreads = 1;
+        int splitDepth = 2;
+        for(int i=1; i<args.length; i++) {
+            if(args[i].equals("-fen")) {
+                fen = args[++i];
+            }
+            else if(args[i].equals("-epd")) {
+                epd = args[++i];
+            }
+            else if(args[i].equals("-divide")) {
+                divide = true;
+            }
+            else if(args[i].equals("-hash")) {
+                hashSizeMB = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-threads")) {
+                nbThreads = Integer.parseInt(args[++i]);
+            }
+            else if(args[i].equals("-split")) {
+                splitDepth = Integer.parseInt(args[++i]);
+            }
+            else {
+                System.out.println("Unknown option \"" + args[i] + "\"");
+                return;
+            }
+        }
+
+        if(epd != null) {
+            if(checkEPD(epd, depth, hashSizeMB, nbThreads)) {
+                System.out.println("\nThe computation is correct!!");
+            }
+            else {
+                System.out.println("\n/!\\ There is a mistake!!");
+            }
+            return;
+        }
+
+        ChessBoard board = readPosition(fen);
+        System.out.println(board);
+        Perft perft = new Perft(board, hashSizeMB);
+        long startTime = System.currentTimeMillis();
+        long nodes;
+        if(divide) {
+            nodes = perft.divide(depth);
+        }
+        else if(nbThreads > 1) {
+            nodes = perft.parallelPerft(depth, nbThreads, splitDepth);
+        }
+        else {
+            nodes = perft.perft(depth);
+        }
+        long time = Math.max(System.currentTimeMillis() - startTime, 1);
+        System.out.println("perft(" + depth + ") = " + nodes);
+        System.out.println("Time : " + ((double) time)/1000 + " sec");
+        System.out.println("Speed : " + (1000 * nodes / time) + " nodes / sec");
+        for(Map.Entry<String, Long> entry : perft.getNodesPerThread().entrySet()) {
+            System.out.println("    " + entry.getKey() + " : " + entry.getValue()
+            + " nodes, " + (1000 * entry.getValue() / time) + " nodes / sec");
+        }
+    }
+}
@@ -24,11 +24,37 @@ public interface Board {
     */
     public void move(Move move);
 
+    /*
+    This function plays a move encoded as an int, as found in the MoveList
+    filled by getLegalMoves(MoveList) or getPseudoLegalMoves(MoveList)
+    */
+    public void move(int move);
+
     /*
     This function comes back one move
     */
     public void undo();
 
+    /*
+    This function lets the player to move pass his turn (null move), undo()
+    takes it back. It is only meant for the searches, that check if a
+    position stays good enough even when the player to move does nothing
+    */
+    public void playNullMove();
+
+    /*
+    This function returns true if a search can play a null move : passing must
+    be worse than any move. It returns false when the player to move is in
+    check, or when the position may be a zugzwang (only pawns left for chess)
+    */
+    public boolean canPlayNullMove();
+
+    /*
+    This function returns true if the player to move is in check (always false
+    for games without check)
+    */
+    public boolean isCheck();
+
     /*
     This function returns :
         - 2 if the game is still running
@@ -44,6 +70,64 @@ public interface Board {
     */
     public Vector<Move> getLegalMoves();
 
+    /*
+    This function returns the vector of the pseudo legal moves in the current
+    position : every legal move is in it, but some of the moves may be illegal.
+    It lets a search delay the legality check until a move is actually explored
+    */
+    public Vector<Move> getPseudoLegalMoves();
+
+    /*
+    This function returns true if the move, taken from getPseudoLegalMoves() in
+    the current position, is legal
+    */
+    public boolean isLegal(Move move);
+
+    /*
+    These functions fill the list given as input with the encoded legal (or
+    pseudo legal) moves of the current position. The previous content of the
+    list is discarded, so a search can reuse one list per ply
+    */
+    public void getLegalMoves(MoveList moves);
+
+    public void getPseudoLegalMoves(MoveList moves);
+
+    /*
+    This function is the same as isLegal(Move) for an encoded move
+    */
+    public boolean isLegal(int move);
+
+    /*
+    These functions split getPseudoLegalMoves(MoveList) in 2 : the threats
+    (captures and promotions for chess, see Move.isThreat()) and the other
+    moves. A search can then generate the quiet moves only if the threats did
+    not produce a cutoff
+    */
+    public void getThreats(MoveList moves);
+
+    public void getQuietMoves(MoveList moves);
+
+    /*
+    This function returns true if the encoded move could be returned by
+    getPseudoLegalMoves(MoveList) in the current position. It lets a search try
+    a move found in another position (transposition table, killer moves)
+    without generating all the moves
+    */
+    public boolean isPseudoLegal(int move);
+
+    /*
+    This function returns an estimation of what a threat wins, in the unit of
+    the evaluation of the game. A negative value means that the threat is
+    likely to lose material
+    */
+    public int threatGain(int move);
+
+    /*
+    This function returns the Move object corresponding to an encoded move of
+    the current position
+    */
+    public Move toMove(int move);
+
     /*
     This function returns the state of the board. The representation is free as
     long as it fits in a int[]
@@ -71,6 +155,13 @@ public interface Board {
     */
     public Long toHash();
 
+    /*
+    This function returns the same hash number as toHash() without boxing it.
+    Boards are expected to keep it up to date on each move so that calling it
+    is cheap
+    */
+    public long getHash();
+
     /*
     When this function is called, the board will be printed after each move
     */
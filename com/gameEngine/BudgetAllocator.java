@@ -0,0 +1,145 @@
+package com.gameEngine;
+
+import java.util.Arrays;
+
+/*
+Shares the budget of nodes of a position between its moves according to how
+promising they look, instead of evenly. Each move gets a prior weight :
+    - the hash move (best move found for this position earlier) is the most
+      likely to be the best one
+    - the threats that do not lose material get more as they win more (by
+      Board.threatGain)
+    - the quiet moves get a unit weight
+    - the threats that lose material get less
+The moves are sorted by decreasing weight, and each one gets the part of the
+budget left that its weight has among the moves not searched yet. The budget
+is thus shared again after each search : what a search did not use goes to
+the following moves, in proportion to their weights.
+The scores returned by the searches correct the priors (see update()) : when
+a move gets a score inside the window or close to it, the moves of the same
+kind not searched yet are boosted. A kind of moves that was ranked too low
+thus gets more of the budget left, in the order of the moves already sorted.
+An allocator is meant to be reused, one per ply, by calling reset().
+*/
+public class BudgetAllocator {
+    private static final double HASH_WEIGHT = 8;
+    private static final double THREAT_WEIGHT = 2;
+    private static final double QUIET_WEIGHT = 1;
+    private static final double LOSING_THREAT_WEIGHT = 0.5;
+    // a good score multiplies the weights of the kind by BOOST, up to
+    // MAX_BOOST times their priors
+    private static final double BOOST = 2;
+    private static final double MAX_BOOST = 4;
+
+    // kinds of moves
+    private static final int HASH = 0;
+    private static final int THREAT = 1;
+    private static final int QUIET = 2;
+    private static final int LOSING_THREAT = 3;
+
+    private MoveList threats;
+    private int size;
+    private double[] priors;
+    private int[] kinds;
+    private double[] weights;
+    // sum of the weights of the moves from i to the end
+    private double[] weightsLeft;
+    // factor of the weights of each kind
+    private double[] boosts;
+
+    public BudgetAllocator() {
+        threats = new MoveList();
+        priors = new double[128];
+        kinds = new int[128];
+        weights = new double[128];
+        weightsLeft = new double[129];
+        boosts = new double[4];
+    }
+
+    /*
+    Computes the weights of the legal moves of the current position of board
+    and sorts moves by decreasing weight. hashMove may be -1
+    */
+    public void reset(Board board, MoveList moves, int hashMove) {
+        size = moves.size();
+        if(weights.length < size) {
+            priors = new double[2*size];
+            kinds = new int[2*size];
+            weights = new double[2*size];
+            weightsLeft = new double[2*size + 1];
+        }
+        board.getThreats(threats);
+        for(int i=0; i<size; i++) {
+            int move = moves.get(i);
+            int kind = QUIET;
+            double weight = QUIET_WEIGHT;
+            if(move == hashMove) {
+                kind = HASH;
+                weight = HASH_WEIGHT;
+            }
+            else if(threats.contains(move)) {
+                int gain = board.threatGain(move);
+                kind = gain >= 0 ? THREAT : LOSING_THREAT;
+                weight = gain >= 0 ? THREAT_WEIGHT + gain : LOSING_THREAT_WEIGHT;
+            }
+            // insertion sort, the lists are short
+            int j = i;
+            while(j > 0 && weights[j-1] < weight) {
+                weights[j] = weights[j-1];
+                kinds[j] = kinds[j-1];
+                moves.set(j, moves.get(j-1));
+                j--;
+            }
+            weights[j] = weight;
+            kinds[j] = kind;
+            moves.set(j, move);
+        }
+        System.arraycopy(weights, 0, priors, 0, size);
+        Arrays.fill(boosts, 1);
+        sumWeights(0);
+    }
+
+    /*
+    The i-th move was searched with the window [alpha, beta] and got eval. If
+    the score is inside the window or less than margin away from it, the move
+    was worth searching and the moves of the same kind after it are boosted.
+    The first move is not compared with any score, it tells nothing
+    */
+    public void update(int i, double eval, double alpha, double beta, double margin) {
+        if(i == 0 || eval <= alpha - margin || eval >= beta + margin) {
+            return;
+        }
+        int kind = kinds[i];
+        if(boosts[kind] >= MAX_BOOST) {
+            return;
+        }
+        boosts[kind] *= BOOST;
+        for(int j=i+1; j<size; j++) {
+            if(kinds[j] == kind) {
+                weights[j] = priors[j] * boosts[kind];
+            }
+        }
+        sumWeights(i+1);
+    }
+
+    // computes weightsLeft from the i-th move to the end
+    private void sumWeights(int i) {
+        weightsLeft[size] = 0;
+        for(int j=size-1; j>=i; j--) {
+            weightsLeft[j] = weightsLeft[j+1] + weights[j];
+        }
+    }
+
+    /*
+    Returns the part of budgetLeft given to the i-th move, the moves before it
+    being already searched
+    */
+    public int share(int i, int budgetLeft) {
+        if(budgetLeft <= 0) {
+            return 0;
+        }
+        return (int) (budgetLeft * weights[i] / weightsLeft[i]);
+    }
+
+    public double getWeight(int i) { return weights[i]; }
+}
@@ -6,4 +6,18 @@ public interface Evaluation {
     */
     public double evaluate(Board board);
 
+    /*
+    This function returns the value, in the scale of evaluate(), of one unit of
+    Board.threatGain() (a pawn for chess). The searches size their windows and
+    margins with it
+    */
+    public double getUnit();
+
+    /*
+    This function returns the score evaluate() gives to a game won by the first
+    player (the second player gets its opposite). It is POSITIVE_INFINITY if
+    the finished games are not scored apart
+    */
+    public double getWinScore();
+
 }
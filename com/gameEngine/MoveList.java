@@ -0,0 +1,81 @@
+package com.gameEngine;
+
+import java.util.Arrays;
+
+/*
+List of moves packed in ints. The meaning of the ints is chosen by the Board
+that fills the list, the only guarantees are that two equal moves have the same
+int and that a move is never negative.
+A list is meant to be reused from one position to the next (typically one list
+per ply of a search) so that generating the moves does not create any object.
+*/
+public class MoveList {
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(64);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+        size = 0;
+    }
+
+    public void add(int move) {
+        if(size == moves.length) {
+            moves = Arrays.copyOf(moves, 2*size);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) { return moves[index]; }
+
+    public void set(int index, int move) { moves[index] = move; }
+
+    public void swap(int i, int j) {
+        int tmp = moves[i];
+        moves[i] = moves[j];
+        moves[j] = tmp;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() { size = 0; }
+
+    // keeps only the first moves of the list
+    public void truncate(int newSize) {
+        if(newSize < size) {
+            size = newSize;
+        }
+    }
+
+    public boolean contains(int move) {
+        return indexOf(move) >= 0;
+    }
+
+    // index of the first occurrence of move, -1 if it is not in the list
+    public int indexOf(int move) {
+        for(int i=0; i<size; i++) {
+            if(moves[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // replaces the content of this list by the content of other
+    public void copy(MoveList other) {
+        if(moves.length < other.size) {
+            moves = new int[other.moves.length];
+        }
+        System.arraycopy(other.moves, 0, moves, 0, other.size);
+        size = other.size;
+    }
+
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(moves, size));
+    }
+}
@@ -0,0 +1,152 @@
+package com.gameEngine;
+
+/*
+Orders the pseudo legal moves of a position for a search. Every move gets an
+integer score once, when the position is reached :
+    - the hash move (best move found for this position earlier)
+    - the threats that do not lose material, by their gain (Board.threatGain)
+    - the killer moves (quiet moves that produced a cutoff at the same ply)
+    - the counter move (quiet move that produced a cutoff after the same move
+      of the opponent)
+    - the quiet moves, by their history score
+    - the threats that lose material
+The moves are then given one by one by selecting the best remaining score, so
+a node that is cut after its first moves never pays for a full sort.
+Unlike StagedMoveGenerator, all the moves are generated at once, which lets
+the quiet moves be ordered by their history.
+The moves must still be checked with Board.isLegal(int) before being played.
+An ordering is meant to be reused, one per ply, by calling reset().
+*/
+public class MoveOrdering {
+    public static final int NONE = -1;
+
+    private static final int HASH_SCORE = 1 << 30;
+    private static final int WINNING_THREAT_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int COUNTER_MOVE_SCORE = 1 << 26;
+    private static final int LOSING_THREAT_SCORE = -(1 << 28);
+
+    private MoveList moves;
+    private MoveList quiets;
+    private int[] scores;
+    private int index;
+    // optional scores of the quiet moves, indexed by the encoded move
+    private int[] history;
+
+    public MoveOrdering() {
+        moves = new MoveList();
+        quiets = new MoveList();
+        scores = new int[128];
+    }
+
+    /*
+    The history must be indexed by the encoded moves of the board and its
+    values must stay below 2^26 so that the killers and the counter move come
+    first
+    */
+    public void setHistory(int[] history) {
+        this.history = history;
+    }
+
+    /*
+    Generates and scores the moves of the current position of board. The hash
+    move, the killers and the counter move may be NONE, they are only used if
+    they are among the moves of the position
+    */
+    public void reset(Board board, int hashMove, int killer1, int killer2,
+                      int counterMove) {
+        board.getThreats(moves);
+        int nbThreats = moves.size();
+        board.getQuietMoves(quiets);
+        for(int i=0; i<quiets.size(); i++) {
+            moves.add(quiets.get(i));
+        }
+        if(scores.length < moves.size()) {
+            scores = new int[2*moves.size()];
+        }
+        for(int i=0; i<moves.size(); i++) {
+            int move = moves.get(i);
+            if(move == hashMove) {
+                scores[i] = HASH_SCORE;
+            }
+            else if(i < nbThreats) {
+                int gain = board.threatGain(move);
+                scores[i] = gain >= 0 ? WINNING_THREAT_SCORE + gain :
+                                        LOSING_THREAT_SCORE + gain;
+            }
+            else if(move == killer1) {
+                scores[i] = KILLER_SCORE + 1;
+            }
+            else if(move == killer2) {
+                scores[i] = KILLER_SCORE;
+            }
+            else if(move == counterMove) {
+                scores[i] = COUNTER_MOVE_SCORE;
+            }
+            else {
+                scores[i] = history == null ? 0 : history[move];
+            }
+        }
+        index = 0;
+    }
+
+    public void reset(Board board, int hashMove, int killer1, int killer2) {
+        reset(board, hashMove, killer1, killer2, NONE);
+    }
+
+    public void reset(Board board) {
+        reset(board, NONE, NONE, NONE, NONE);
+    }
+
+    /*
+    Generates only the threats of the current position of board, scored by
+    their gain (quiescence search)
+    */
+    public void resetThreats(Board board) {
+        board.getThreats(moves);
+        quiets.clear();
+        if(scores.length < moves.size()) {
+            scores = new int[2*moves.size()];
+        }
+        for(int i=0; i<moves.size(); i++) {
+            scores[i] = board.threatGain(moves.get(i));
+        }
+        index = 0;
+    }
+
+    /*
+    Returns the best move not given yet, or NONE if all the moves were given
+    */
+    public int next() {
+        if(index >= moves.size()) {
+            return NONE;
+        }
+        int best = index;
+        for(int i=index+1; i<moves.size(); i++) {
+            if(scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        moves.swap(index, best);
+        int score = scores[index];
+        scores[index] = scores[best];
+        scores[best] = score;
+        return moves.get(index++);
+    }
+
+    /*
+    Returns true if move is one of the quiet moves of the position, the only
+    ones the killers, counter moves and history are made of
+    */
+    public boolean isQuiet(int move) {
+        return quiets.contains(move);
+    }
+
+    // score of the last move given by next()
+    public int getLastScore() { return scores[index-1]; }
+
+    // number of moves given so far
+    public int getNbGiven() { return index; }
+
+    public int size() { return moves.size(); }
+}
@@ -0,0 +1,54 @@
+package com.gameEngine;
+
+import java.util.Random;
+
+/*
+Chooses the moves of the playouts of a Monte Carlo tree search : the game is
+played from a new position of the tree with these moves, and the result tells
+how good the position is. The policy must not keep any state, it can be shared
+by several searches
+*/
+public interface PlayoutPolicy {
+    /*
+    Returns one of the legal moves of the current position of board, found in
+    moves (never empty)
+    */
+    public int choose(Board board, MoveList moves, Random random);
+
+    // uniformly random moves
+    public static final PlayoutPolicy RANDOM =
+        (board, moves, random) -> moves.get(random.nextInt(moves.size()));
+
+    /*
+    Plays the threat that wins the most (by Board.threatGain), or else a random
+    move among those that do not lose material. The playouts are slower but
+    closer to a real game than with RANDOM
+    */
+    public static final PlayoutPolicy GREEDY = (board, moves, random) -> {
+        int bestGain = Integer.MIN_VALUE;
+        int nbBest = 0;
+        int nbSafe = 0;
+        int best = moves.get(0);
+        int safe = best;
+        for(int i=0; i<moves.size(); i++) {
+            int move = moves.get(i);
+            int gain = board.threatGain(move);
+            // reservoir sampling, each of the moves kept has the same chance
+            if(gain > bestGain) {
+                bestGain = gain;
+                best = move;
+                nbBest = 1;
+            }
+            else if(gain == bestGain && random.nextInt(++nbBest) == 0) {
+                best = move;
+            }
+            if(gain >= 0 && random.nextInt(++nbSafe) == 0) {
+                safe = move;
+            }
+        }
+        if(bestGain > 0) {
+            return best;
+        }
+        return nbSafe > 0 ? safe : moves.get(random.nextInt(moves.size()));
+    };
+}
@@ -0,0 +1,191 @@
+package com.gameEngine;
+
+/*
+Gives the pseudo legal moves of a position one by one, in the order in which a
+search is most likely to find a cutoff :
+    - the hash move (best move found for this position earlier)
+    - the threats (captures and promotions) that do not lose material, best
+      gain first
+    - the killer moves (quiet moves that produced a cutoff at the same ply)
+    - the quiet moves
+    - the threats that lose material
+Each group of moves is only generated when the previous ones are exhausted, so
+a node where the hash move or a capture produces a cutoff never generates its
+quiet moves.
+The moves must still be checked with Board.isLegal(int) before being played.
+A generator is meant to be reused, one per ply, by calling reset().
+*/
+public class StagedMoveGenerator {
+    public static final int NONE = -1;
+
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_THREATS = 1;
+    private static final int GOOD_THREATS = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int BAD_THREATS = 6;
+    private static final int DONE = 7;
+
+    private Board board;
+    private int stage;
+    private int hashMove;
+    private int[] killers;
+    // killers that were actually given, they are skipped among the quiets
+    private int[] givenKillers;
+    private int nbGivenKillers;
+
+    private MoveList goodThreats;
+    private int[] gains;
+    private MoveList badThreats;
+    private MoveList quiets;
+    private int index;
+
+    public StagedMoveGenerator() {
+        goodThreats = new MoveList();
+        gains = new int[64];
+        badThreats = new MoveList();
+        quiets = new MoveList();
+        killers = new int[2];
+        givenKillers = new int[2];
+    }
+
+    /*
+    Starts the generation for the current position of board. hashMove and the
+    killers may be NONE, they are ignored if they are not pseudo legal
+    */
+    public void reset(Board board, int hashMove, int killer1, int killer2) {
+        this.board = board;
+        this.hashMove = hashMove;
+        killers[0] = killer1;
+        killers[1] = killer2 == killer1 ? NONE : killer2;
+        nbGivenKillers = 0;
+        stage = HASH_MOVE;
+        index = 0;
+    }
+
+    public void reset(Board board) {
+        reset(board, NONE, NONE, NONE);
+    }
+
+    /*
+    Returns the next pseudo legal move or NONE if all the moves were given
+    */
+    public int next() {
+        while(true) {
+            switch(stage) {
+                case HASH_MOVE :
+                    stage = GENERATE_THREATS;
+                    if(hashMove != NONE && board.isPseudoLegal(hashMove)) {
+                        return hashMove;
+                    }
+                    hashMove = NONE;
+                    break;
+                case GENERATE_THREATS :
+                    generateThreats();
+                    stage = GOOD_THREATS;
+                    index = 0;
+                    break;
+                case GOOD_THREATS :
+                    if(index < goodThreats.size()) {
+                        return pickBestThreat();
+                    }
+                    stage = KILLERS;
+                    index = 0;
+                    break;
+                case KILLERS :
+                    if(index < killers.length) {
+                        int killer = killers[index++];
+                        if(killer != NONE && killer != hashMove && isQuiet(killer)
+                        && board.isPseudoLegal(killer)) {
+                            givenKillers[nbGivenKillers++] = killer;
+                            return killer;
+                        }
+                        break;
+                    }
+                    stage = GENERATE_QUIETS;
+                    break;
+                case GENERATE_QUIETS :
+                    board.getQuietMoves(quiets);
+                    stage = QUIETS;
+                    index = 0;
+                    break;
+                case QUIETS :
+                    while(index < quiets.size()) {
+                        int move = quiets.get(index++);
+                        if(!isAlreadyGiven(move)) {
+                            return move;
+                        }
+                    }
+                    stage = BAD_THREATS;
+                    index = 0;
+                    break;
+                case BAD_THREATS :
+                    if(index < badThreats.size()) {
+                        return badThreats.get(index++);
+                    }
+                    stage = DONE;
+                    break;
+                default :
+                    return NONE;
+            }
+        }
+    }
+
+    private void generateThreats() {
+        // the bad threats are only used as a temporary list here
+        board.getThreats(badThreats);
+        goodThreats.clear();
+        if(gains.length < badThreats.size()) {
+            gains = new int[2*badThreats.size()];
+        }
+        // the threats are split once, the good ones are then selected lazily
+        int nbBad = 0;
+        for(int i=0; i<badThreats.size(); i++) {
+            int move = badThreats.get(i);
+            if(move == hashMove) {
+                continue;
+            }
+            int gain = board.threatGain(move);
+            if(gain < 0) {
+                badThreats.set(nbBad++, move);
+            }
+            else {
+                gains[goodThreats.size()] = gain;
+                goodThreats.add(move);
+            }
+        }
+        badThreats.truncate(nbBad);
+    }
+
+    // selection of the best remaining threat, the list is never fully sorted
+    private int pickBestThreat() {
+        int best = index;
+        for(int i=index+1; i<goodThreats.size(); i++) {
+            if(gains[i] > gains[best]) {
+                best = i;
+            }
+        }
+        goodThreats.swap(index, best);
+        int gain = gains[index];
+        gains[index] = gains[best];
+        gains[best] = gain;
+        return goodThreats.get(index++);
+    }
+
+    private boolean isQuiet(int move) {
+        return !goodThreats.contains(move) && !badThreats.contains(move);
+    }
+
+    private boolean isAlreadyGiven(int move) {
+        if(move == hashMove) {
+            return true;
+        }
+        for(int i=0; i<nbGivenKillers; i++) {
+            if(givenKillers[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
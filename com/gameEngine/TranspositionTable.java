@@ -0,0 +1,188 @@
+package com.gameEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Fixed size table of the positions already searched, indexed by Board.getHash().
+Each entry is packed in a long :
+    bits 0-15  : best move (encoded by the board, NO_MOVE if there is none)
+    bits 16-23 : depth of the search below the position
+    bits 24-25 : bound (EXACT, LOWER_BOUND or UPPER_BOUND)
+    bits 26-30 : age (number of the search that stored the entry, modulo 32)
+    bit 31     : set in every stored entry, so that an empty slot (all zeros)
+                 never matches a hash, not even 0
+    bits 32-63 : score, as a float
+It is stored next to the hash xored with the entry, so an entry written by 2
+threads at the same time does not match any hash and is simply ignored : the
+table can be shared without any lock.
+The table is made of buckets of 2 entries : the first one keeps the deepest
+search of the current age, the second one is always replaced.
+*/
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // returned by probe() when the position is not in the table, the bound of
+    // a stored entry is never 3
+    public static final long MISS = -1L;
+    public static final int NO_MOVE = 0xFFFF;
+
+    private static final long VALID = 1L << 31;
+
+    private static final int ENTRY_SIZE = 16;
+    private static final int BUCKET_SIZE = 2;
+
+    // 2 longs per entry : hash ^ data and data
+    private final long[] table;
+    private final int mask;
+    private int age = 0;
+
+    private final LongAdder nbProbes = new LongAdder();
+    private final LongAdder nbHits = new LongAdder();
+    private final LongAdder nbStores = new LongAdder();
+    private final LongAdder nbCollisions = new LongAdder();
+
+    public TranspositionTable(int sizeMB) {
+        if(sizeMB <= 0) {
+            throw new IllegalArgumentException("Error in TranspositionTable.<init> :"
+            + " The size must be positive");
+        }
+        long nbBuckets = (long) sizeMB * 1024 * 1024 / (ENTRY_SIZE * BUCKET_SIZE);
+        nbBuckets = Long.highestOneBit(Math.min(nbBuckets, 1 << 26));
+        table = new long[(int) nbBuckets * BUCKET_SIZE * 2];
+        mask = (int) nbBuckets - 1;
+    }
+
+    /* -----  Packing entries  ----- */
+    public static int getMove(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) ((entry >>> 16) & 0xFF);
+    }
+
+    public static int getBound(long entry) {
+        return (int) ((entry >>> 24) & 3);
+    }
+
+    private static int getAge(long entry) {
+        return (int) ((entry >>> 26) & 0x1F);
+    }
+
+    private static boolean isValid(long entry) {
+        return (entry & VALID) != 0;
+    }
+
+    public static double getScore(long entry) {
+        return Float.intBitsToFloat((int) (entry >>> 32));
+    }
+
+    private long pack(int move, double score, int depth, int bound) {
+        return (move & 0xFFFFL)
+             | ((long) Math.min(Math.max(depth, 0), 255) << 16)
+             | ((long) bound << 24)
+             | ((long) age << 26)
+             | VALID
+             | ((long) Float.floatToIntBits((float) score) << 32);
+    }
+
+    /* -----  Using the table  ----- */
+    /*
+    Returns the entry of the position of hash, or MISS if it is not stored
+    */
+    public long probe(long hash) {
+        nbProbes.increment();
+        int index = bucketIndex(hash);
+        for(int i=0; i<BUCKET_SIZE; i++) {
+            long data = table[index + 2*i + 1];
+            if(isValid(data) && (table[index + 2*i] ^ data) == hash) {
+                nbHits.increment();
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /*
+    Stores the result of a search of the given depth below the position of
+    hash. move is the best move found, or NO_MOVE
+    */
+    public void store(long hash, int move, double score, int depth, int bound) {
+        nbStores.increment();
+        int index = bucketIndex(hash);
+        long data = pack(move, score, depth, bound);
+        long first = table[index + 1];
+        boolean sameFirst = (table[index] ^ first) == hash;
+        // the first entry is replaced by deeper searches, by the searches of
+        // the same position and when it is left from a previous search
+        int slot = 1;
+        if(sameFirst || !isValid(first) || getAge(first) != age
+        || depth >= getDepth(first)) {
+            slot = 0;
+        }
+        int position = index + 2*slot;
+        long old = table[position + 1];
+        if(isValid(old) && (table[position] ^ old) != hash) {
+            nbCollisions.increment();
+        }
+        // keep the best move of the position if the new search has none
+        if(move == NO_MOVE && isValid(old) && (table[position] ^ old) == hash) {
+            data = (data & ~0xFFFFL) | (old & 0xFFFF);
+        }
+        table[position] = hash ^ data;
+        table[position + 1] = data;
+    }
+
+    private int bucketIndex(long hash) {
+        // the low bits of the hash are mixed with the high bits so that small
+        // hashes (tic tac toe) are spread on the whole table too
+        int bucket = (int) (hash ^ (hash >>> 32)) & mask;
+        return bucket * BUCKET_SIZE * 2;
+    }
+
+    /*
+    Must be called before each new search : the entries of the previous
+    searches are replaced first
+    */
+    public void newSearch() {
+        age = (age + 1) & 0x1F;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        resetStatistics();
+    }
+
+    /* -----  Statistics  ----- */
+    public void resetStatistics() {
+        nbProbes.reset();
+        nbHits.reset();
+        nbStores.reset();
+        nbCollisions.reset();
+    }
+
+    public long getNbProbes() { return nbProbes.sum(); }
+    public long getNbHits() { return nbHits.sum(); }
+    public long getNbStores() { return nbStores.sum(); }
+    public long getNbCollisions() { return nbCollisions.sum(); }
+
+    // proportion of the probes that found their position
+    public double getHitRate() {
+        long probes = nbProbes.sum();
+        return probes == 0 ? 0 : (double) nbHits.sum() / probes;
+    }
+
+    // proportion of the stores that replaced another position
+    public double getCollisionRate() {
+        long stores = nbStores.sum();
+        return stores == 0 ? 0 : (double) nbCollisions.sum() / stores;
+    }
+
+    public String toString() {
+        return String.format("probes %d, hit rate %.1f%%, collision rate %.1f%%",
+        nbProbes.sum(), 100*getHitRate(), 100*getCollisionRate());
+    }
+}
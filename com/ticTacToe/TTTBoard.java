@@ -10,10 +10,14 @@ public class TTTBoard implements Board {
     protected static final int X = 1;
     protected static final int O = -1;
     protected static final int EMPTY = 0;
+    // marks a null move in moveStack, -1 being a resignation
+    private static final int NULL_MOVE = -2;
 
     private int[] board;
     private int[] moveStack;
     private int nbMoves;
+    // null moves in moveStack, they do not fill the board
+    private int nbNullMoves = 0;
     private Player oplayer, xplayer;
     private int turn;
     private int winner = 0;
@@ -37,9 +41,8 @@ public class TTTBoard implements Board {
             }
         }
         toReturn.nbMoves = this.nbMoves;
-        for(int i=0; i<this.nbMoves; i++) {
-            toReturn.moveStack[i] = this.moveStack[i];
-        }
+        toReturn.nbNullMoves = this.nbNullMoves;
+        toReturn.moveStack = this.moveStack.clone();
         return toReturn;
     }
 
@@ -74,14 +77,20 @@ public class TTTBoard implements Board {
     }
 
     public void move(Move move) {
-        if(move.isResignation()) {
+        move(move.isResignation() ? -1 : move.getDestination());
+    }
+
+    // the encoded move is the index of the square, -1 being a resignation
+    public void move(int i) {
+        if(nbMoves == moveStack.length) {
+            growStack();
+        }
+        if(i < 0) {
             moveStack[nbMoves++] = -1;
             winner = turn==0? O : X;
             turn = 1 - turn;
             return;
         }
-        TTTMove tttMove = (TTTMove) move;
-        int i = move.getDestination();
         if(board[i] != EMPTY) {
             System.out.println("Illegal Move");
         }
@@ -92,15 +101,40 @@ public class TTTBoard implements Board {
 
     public void undo() {
         int lastMove = moveStack[--nbMoves];
-        if(lastMove > 0) {
+        if(lastMove >= 0) {
             board[lastMove] = EMPTY;
         }
+        else if(lastMove == NULL_MOVE) {
+            nbNullMoves--;
+        }
         else {
             winner = 0;
         }
         turn = 1 - turn;
     }
 
+    public void playNullMove() {
+        if(nbMoves == moveStack.length) {
+            growStack();
+        }
+        moveStack[nbMoves++] = NULL_MOVE;
+        nbNullMoves++;
+        turn = 1 - turn;
+    }
+
+    // the null moves can make the stack longer than the 9 squares
+    private void growStack() {
+        int[] newStack = new int[2*moveStack.length];
+        System.arraycopy(moveStack, 0, newStack, 0, nbMoves);
+        moveStack = newStack;
+    }
+
+    // the positions are too small for the null move to save anything, the
+    // searches do not try it
+    public boolean canPlayNullMove() { return false; }
+
+    public boolean isCheck() { return false; }
+
     public int gameOver() {
         if(winner != 0) {
             return winner;
@@ -139,7 +173,7 @@ public class TTTBoard implements Board {
             return symbol2;
         }
 
-        if(nbMoves == 9) {
+        if(nbMoves - nbNullMoves == 9) {
             return 0;
         }
 
@@ -159,6 +193,42 @@ public class TTTBoard implements Board {
         return legalMoves;
     }
 
+    public void getLegalMoves(MoveList moves) {
+        moves.clear();
+        for(int i=0; i<9; i++) {
+            if(board[i] == EMPTY) {
+                moves.add(i);
+            }
+        }
+    }
+
+    public Vector<Move> getPseudoLegalMoves() { return getLegalMoves(); }
+
+    public void getPseudoLegalMoves(MoveList moves) { getLegalMoves(moves); }
+
+    public boolean isLegal(Move move) {
+        return move.isResignation() || isLegal(move.getDestination());
+    }
+
+    public boolean isLegal(int move) {
+        return move < 0 || board[move] == EMPTY;
+    }
+
+    // there are no captures in tic-tac-toe, every move is quiet
+    public void getThreats(MoveList moves) { moves.clear(); }
+
+    public void getQuietMoves(MoveList moves) { getLegalMoves(moves); }
+
+    public boolean isPseudoLegal(int move) {
+        return move >= 0 && move < 9 && board[move] == EMPTY;
+    }
+
+    public int threatGain(int move) { return 0; }
+
+    public Move toMove(int move) {
+        return move < 0 ? new TTTMove("resign") : new TTTMove(move);
+    }
+
     public int[] getSquares() { return board; }
 
     public int getTurn() { return turn; }
@@ -195,13 +265,23 @@ public class TTTBoard implements Board {
     }
 
     public Long toHash() {
+        return Long.valueOf(getHash());
+    }
+
+    public long getHash() {
         long hash = 0;
         long base = 1;
+        int nbFilled = 0;
         for(int i=0; i<9; i++) {
             hash += base*(board[i]+1);
             base *= 3;
+            nbFilled += board[i] != EMPTY ? 1 : 0;
+        }
+        // the squares only tell whose turn it is if no one passed
+        if(turn != nbFilled % 2) {
+            hash += base;
         }
-        return Long.valueOf(hash);
+        return hash;
     }
 
     public void activatePrint() { printGame = true; }
@@ -8,6 +8,10 @@ public class TTTEvaluation implements Evaluation {
 
     }
 
+    public double getUnit() { return 1; }
+
+    public double getWinScore() { return 1000; }
+
 	public double evaluate(Board board) {
         int result = board.gameOver();
         if(result == 2) {
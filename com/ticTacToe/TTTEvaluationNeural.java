@@ -32,6 +32,12 @@ public class TTTEvaluationNeural implements NeuralEvaluation {
         return nn.propagate(new Matrix(input)).getContent()[0][0];
     }
 
+    // the output of the network is in [0, 1]
+    public double getUnit() { return 0.05; }
+
+    // the finished games are scored by the network like the others
+    public double getWinScore() { return Double.POSITIVE_INFINITY; }
+
     public static int getNbInputs() { return nbInputs; }
 
     public NeuralNetwork getNeuralNet() { return nn; }
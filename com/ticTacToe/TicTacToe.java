@@ -13,36 +13,55 @@ import com.agents.*;
 
 public class TicTacToe {
     private static final int depth = 10;
+    // the iterative deepening agent searches until maxSearchDepth is reached or
+    // timeLimit ms are spent on the move
+    private static final int maxSearchDepth = 9;
+    private static final long timeLimit = 1000;
+    private static final int hashSizeMB = 1;
     private static final int budget = 500;
+    // iterations of the Monte Carlo agent, with random playouts to the end
+    private static final int iterations = 2000;
+    private static final int nbThreads = Runtime.getRuntime().availableProcessors();
     private static Player getAgent(String agentName, String color) {
         if(agentName.equals("Human")) {
             return new Human(color + " Human");
         }
         if(agentName.equals("AgentBudget")) {
-            return new AgentBudget(color + " Agent Budget", budget, new TTTEvaluation());
+            return new AgentBudget(color + " Agent Budget", budget, new TTTEvaluation(), hashSizeMB);
+        }
+        else if(agentName.equals("AgentBudgetParallel")) {
+            return new AgentBudgetParallel(color + " Agent Budget Parallel", budget, new TTTEvaluation(),
+                                           nbThreads, hashSizeMB);
         }
         else if(agentName.equals("AgentBudgetGain")) {
             return new AgentBudgetGain(color + " Agent Budget Gain", budget, new TTTEvaluation());
         }
         else if(agentName.equals("AgentMinimax")) {
-            return new AgentMinimax(color + " AgentMinimax", depth, new TTTEvaluation());
+            return new AgentMinimax(color + " AgentMinimax", depth, new TTTEvaluation(), hashSizeMB);
         }
         else if(agentName.equals("AgentMinimaxSorted")) {
-            return new AgentMinimaxSorted(color + " Agent Minimax Sorted", depth, new TTTEvaluation());
+            return new AgentMinimaxSorted(color + " Agent Minimax Sorted", depth, new TTTEvaluation(), hashSizeMB);
         }
         else if(agentName.equals("AgentNeuralBudget")) {
             NeuralNetwork nn = NeuralNetLoader.loadBestNN("", "TicTacToe");
-            return new AgentBudget(color + " Agent Neural Budget", budget, new TTTEvaluationNeural(nn));
+            return new AgentBudget(color + " Agent Neural Budget", budget, new TTTEvaluationNeural(nn), hashSizeMB);
         }
         else if(agentName.equals("AgentNeuralMinimax")) {
             NeuralNetwork nn = NeuralNetLoader.loadBestNN("", "TicTacToe");
-            return new AgentMinimax(color + " Agent Neural Minimax", depth, new TTTEvaluationNeural(nn));
+            return new AgentMinimax(color + " Agent Neural Minimax", depth, new TTTEvaluationNeural(nn), hashSizeMB);
+        }
+        else if(agentName.equals("AgentMCTS")) {
+            return new AgentMCTS(color + " Agent MCTS", new TTTEvaluation(), iterations, 0);
+        }
+        else if(agentName.equals("AgentMCTSParallel")) {
+            return new AgentMCTSParallel(color + " Agent MCTS Parallel", new TTTEvaluation(), iterations, 0,
+                                         nbThreads);
         }
         else if(agentName.equals("AgentRandom")) {
             return new AgentRandom(color + "Agent Random");
         }
         else if(agentName.equals("Search")) {
-            return new AgentSearch(color + " Agent Seach", depth, new TTTEvaluation());
+            return new AgentSearch(color + " Agent Search", maxSearchDepth, new TTTEvaluation(), hashSizeMB, timeLimit);
         }
         System.out.println("Unknown Agent \"" + agentName + "\"");
         return null;
@@ -51,8 +70,8 @@ public class TicTacToe {
     public static void main(String[] args) {
         Player xplayer, oplayer;
         if(args.length == 0) {
-            xplayer = new AgentMinimax("X", depth, new TTTEvaluation());
-            oplayer = new AgentMinimax("O", depth, new TTTEvaluation());
+            xplayer = new AgentMinimax("X", depth, new TTTEvaluation(), hashSizeMB);
+            oplayer = new AgentMinimax("O", depth, new TTTEvaluation(), hashSizeMB);
         }
         else {
             xplayer = getAgent(args[0], "X ");